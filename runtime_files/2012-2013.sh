@@ -1,419 +1,7 @@
 #!/bin/bash
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=121231
+java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=121231-130228
 es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130101
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
 
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130102
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130103
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130104
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130105
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130106
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130107
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130108
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130109
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130110
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130111
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130112
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130113
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130114
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130115
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130116
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130117
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130118
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130119
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130120
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130121
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130122
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130123
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130124
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130125
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130126
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130127
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130128
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130129
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130130
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130131
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130201
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130202
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130203
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130204
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130205
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130206
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130207
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130208
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130209
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130210
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130211
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130212
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130213
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130214
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130215
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130216
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130217
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130218
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130219
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130220
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130221
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130222
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130223
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130224
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130225
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130226
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130227
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2012-2013.ini L=1,2 date=130228
-es=$?
 if [ "$es" != "0" ]; then
    echo "oh no!"
    exit $es;
@@ -1,5 +1,5 @@
 #!/bin/bash
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=131227
+java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=131227-140219
 es=$?
 
 if [ "$es" != "0" ]; then
@@ -7,441 +7,7 @@ if [ "$es" != "0" ]; then
    exit $es;
 fi
 
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=131228
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=131229
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=131230
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=131231
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140101
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140102
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140103
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140104
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140105
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140106
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140107
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140108
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140109
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140110
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140111
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140112
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140113
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140114
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140115
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140116
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140117
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140118
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140119
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140120
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140121
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140122
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140123
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140124
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140125
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140126
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140127
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140128
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140129
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140130
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140131
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140201
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140202
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140203
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140204
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140205
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140206
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140207
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140208
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140209
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140210
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140211
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140212
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140213
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140214
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140215
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140216
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140217
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140218
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140219
-es=$?
-if [ "$es" != "0" ]; then
-   echo "oh no!"
-   exit $es;
-fi
-
-#java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140220
-#es=$?
-#if [ "$es" != "0" ]; then
-#   echo "oh no!"
-#   exit $es;
-#fi
-#
-#java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140221
-#es=$?
-#if [ "$es" != "0" ]; then
-#   echo "oh no!"
-#   exit $es;
-#fi
-#
-#java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140222
-#es=$?
-#if [ "$es" != "0" ]; then
-#   echo "oh no!"
-#   exit $es;
-#fi
-#
-#java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140223
-#es=$?
-#if [ "$es" != "0" ]; then
-#   echo "oh no!"
-#   exit $es;
-#fi
-#
-#java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140224
-#es=$?
-#if [ "$es" != "0" ]; then
-#   echo "oh no!"
-#   exit $es;
-#fi
-#
-#java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140225
-#es=$?
-#if [ "$es" != "0" ]; then
-#   echo "oh no!"
-#   exit $es;
-#fi
-#
-#java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140226
-#es=$?
-#if [ "$es" != "0" ]; then
-#   echo "oh no!"
-#   exit $es;
-#fi
-#
-#java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140227
-#es=$?
-#if [ "$es" != "0" ]; then
-#   echo "oh no!"
-#   exit $es;
-#fi
-#
-#java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140228
+#java -jar cdf_gen.jar ini=2013-2014.ini L=1,2 date=140220-140228
 #es=$?
 #if [ "$es" != "0" ]; then
 #   echo "oh no!"
@@ -25,7 +25,6 @@ Description:
 package edu.ucsc.barrel.cdf_gen;
 
 import gsfc.nssdc.cdf.CDFConstants;
-import gsfc.nssdc.cdf.util.CDFTT2000;
 import gsfc.nssdc.cdf.CDFException;
 
 import java.io.File;
@@ -97,8 +96,8 @@ public class BarrelCDF extends CDFFile{
 
       try{
          //calculate min and max epochs
-         min_epoch = CDFTT2000.fromUTCparts(2012, 00, 01);
-         max_epoch = CDFTT2000.fromUTCparts(2015, 11, 31);
+         min_epoch = CDFWriter.tt2000(2012, 00, 01);
+         max_epoch = CDFWriter.tt2000(2015, 11, 31);
          
       }catch(CDFException e){
          System.out.println(e.getMessage());
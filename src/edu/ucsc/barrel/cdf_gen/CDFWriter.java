@@ -34,12 +34,45 @@ import java.io.File;
 import java.io.IOException;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public abstract class CDFWriter implements CDFConstants, CDFFillerMethods{
+   //The CDF library keeps its state in native code that is not thread safe.
+   //Every call into it must hold this lock. Each call names the file it 
+   //works on, so level one products can take turns writing a variable at a 
+   //time. The level two products hold it from creating a file to closing it
+   //since creating one is many calls.
+   static final Object CDF_LOCK = new Object();
+
+   //CDFTT2000 remembers the last day it converted in static fields that are
+   //not synchronized, so every conversion goes through tt2000() or 
+   //tt2000Parts() below, which hold this lock
+   private static final Object TT2000_LOCK = new Object();
+
+   //contents of each skeleton CDF that has been copied so far
+   private static final Map<String, byte[]> skeletons = 
+      new HashMap<String, byte[]>();
+
+   //data products, one for each doXxxCdf() method
+   private static final int
+      MISC = 0, MAGN = 1, FSPC = 2, MSPC = 3, 
+      RCNT = 4, EPHM = 5, SSPC = 6, HKPG = 7;
+
+   //names used for each product in the products setting
+   private static final String[] PRODUCT_NAMES = 
+      {"misc", "magn", "fspc", "mspc", "rcnt", "ephm", "sspc", "hkpg"};
+
    String
       id = "00",
       flt = "00",
@@ -49,10 +82,13 @@ public abstract class CDFWriter implements CDFConstants, CDFFillerMethods{
    int today, yesterday, tomorrow;
    Calendar dateObj = Calendar.getInstance();
    
-   private DataHolder data;
+   protected DataHolder data;
+
+   //whether each cadence's epochs can be binary searched
+   private Boolean[] epochs_sorted = new Boolean[Cadence.values().length];
    
    public CDFWriter(
-      final String d, final String p, final String f,
+      final DataHolder data, final String d, final String p, final String f,
       final String s, final String dir, final String lvl
    ) throws IOException
    {
@@ -89,13 +125,13 @@ public abstract class CDFWriter implements CDFConstants, CDFFillerMethods{
          ((dateObj.get(Calendar.MONTH) + 1) * 100) + 
          dateObj.get(Calendar.DATE);
 
-      //get the data storage object
-      data = CDF_Gen.data;
+      //save the data storage object
+      this.data = data;
       
       //get data from DataHolder and save them to CDF files
       try{
          System.out.println(
-            "Creating " + lvl  + "... (" + data.getSize("1Hz") + " frames)"
+            "Creating " + lvl  + "... (" + data.getSize(Cadence.ONE_HZ) + " frames)"
          );
       
          writeData();
@@ -108,6 +144,7 @@ public abstract class CDFWriter implements CDFConstants, CDFFillerMethods{
    
    private void writeData() throws CDFException{
       File outDir;
+      List<ProductTask> tasks = new ArrayList<ProductTask>();
 
       //make sure the needed output directories exist
       outDir = new File(outputPath + "/" + yesterday);
@@ -118,143 +155,223 @@ public abstract class CDFWriter implements CDFConstants, CDFFillerMethods{
       if(!outDir.exists()){outDir.mkdirs();}
 
       //fill CDF files for yesterday, today, and tomorrow
-      doAllCdf(yesterday);
-      doAllCdf(today);
-      doAllCdf(tomorrow);
+      doAllCdf(yesterday, tasks);
+      doAllCdf(today, tasks);
+      doAllCdf(tomorrow, tasks);
+
+      runTasks(tasks);
    }
 
-   private void doAllCdf(int date) throws CDFException{
-      int first_i, last_i, size;
-      long rec_date = 0;
-      long[] tt2000_parts; 
-
-      //find the first and last indicies for this day for the 1Hz file
-      first_i = -1;
-      size = data.getSize("1Hz");
-      for(last_i = 0; last_i < size; last_i++){
-         tt2000_parts = CDFTT2000.breakdown(data.epoch_1Hz[last_i]);
-         rec_date = 
-            tt2000_parts[2] + //day
-            (100 * tt2000_parts[1]) + //month
-            (10000 * (tt2000_parts[0] - 2000)); //year
-         if(first_i == -1) {
-            if(rec_date == date){
-               //found the first_i index
-               first_i = last_i;
-            }
-         }else if(rec_date > date){
-            break;
+   //adds a task for each product that has data on the given date
+   private void doAllCdf(int date, List<ProductTask> tasks){
+      int[] range;
+
+      for(Cadence cadence : Cadence.values()){
+         range = findDateRange(cadence, date);
+
+         //make sure we have a valid start and stop index and 
+         //that there are some records to process
+         if(range == null){continue;}
+
+         switch(cadence){
+            case ONE_HZ:
+               addTask(tasks, MISC, range, date);
+               break;
+            case FOUR_HZ:
+               addTask(tasks, MAGN, range, date);
+               break;
+            case TWENTY_HZ:
+               addTask(tasks, FSPC, range, date);
+               break;
+            case MOD4:
+               addTask(tasks, MSPC, range, date);
+               addTask(tasks, RCNT, range, date);
+               addTask(tasks, EPHM, range, date);
+               break;
+            case MOD32:
+               addTask(tasks, SSPC, range, date);
+               break;
+            case MOD40:
+               addTask(tasks, HKPG, range, date);
+               break;
          }
       }
-      //make sure we have a valid start and stop index and 
-      //that there are some records to process
-      if(first_i != -1 && (last_i - first_i) > 0){
-         doMiscCdf(first_i, last_i, date);
+   }
+
+   private void addTask(
+      List<ProductTask> tasks, final int product, final int[] range, 
+      final int date
+   ){
+      if(isSelected(PRODUCT_NAMES[product])){
+         tasks.add(new ProductTask(product, range, date));
       }
+   }
 
-      //...for the mod40 file
-      first_i = -1;
-      size = data.getSize("mod40");
-      for(last_i = 0; last_i < size; last_i++){
-         tt2000_parts = CDFTT2000.breakdown(data.epoch_mod40[last_i]);
-         rec_date = 
-            tt2000_parts[2] + //day
-            (100 * tt2000_parts[1]) + //month
-            (10000 * (tt2000_parts[0] - 2000)); //year
-         if(first_i == -1) {
-            if(rec_date == date){
-               //found the first_i index
-               first_i = last_i;
-            }
-         }else if(rec_date > date){
-            break;
+   //Returns true if the products setting includes the named product. If
+   //the setting is not given every product is made.
+   public static boolean isSelected(final String name){
+      String setting = CDF_Gen.getSetting("products");
+      if(setting.equals("")){return true;}
+
+      for(String product_i : setting.split(",")){
+         if(product_i.trim().equalsIgnoreCase(name)){return true;}
+      }
+      return false;
+   }
+
+   //warns about any names in the products setting that are not products
+   public static void checkProducts(){
+      String setting = CDF_Gen.getSetting("products");
+      if(setting.equals("")){return;}
+
+      for(String product_i : setting.split(",")){
+         if(!Arrays.asList(PRODUCT_NAMES).contains(
+            product_i.trim().toLowerCase()
+         )){
+            System.out.println("Unknown product: " + product_i.trim());
          }
       }
-      if(first_i != -1 && (last_i - first_i) > 0){
-         doHkpgCdf(first_i, last_i, date);  
+   }
+
+   //Runs each product task. By default the tasks are run one after another,
+   //setting cdf_threads runs them on that many worker threads.
+   private void runTasks(List<ProductTask> tasks) throws CDFException{
+      int threads = 1;
+      if(!CDF_Gen.getSetting("cdf_threads").equals("")){
+         threads = Integer.parseInt(CDF_Gen.getSetting("cdf_threads"));
       }
+      threads = Math.max(1, Math.min(threads, tasks.size()));
 
-      //...for the mod32 file
-      first_i = -1;
-      size = data.getSize("mod32");
-      for(last_i = 0; last_i < size; last_i++){
-         tt2000_parts = CDFTT2000.breakdown(data.epoch_mod32[last_i]);
-         rec_date = 
-            tt2000_parts[2] + //day
-            (100 * tt2000_parts[1]) + //month
-            (10000 * (tt2000_parts[0] - 2000)); //year
-         if(first_i == -1) {
-            if(rec_date == date){
-               //found the first_i index
-               first_i = last_i;
-            }
-         }else if(rec_date > date){
-            break;
+      if(threads == 1){
+         for(ProductTask task : tasks){
+            task.call();
          }
-      }
-      if(first_i != -1 && (last_i - first_i) > 0){
-         doSspcCdf(first_i, last_i, date);  
+         return;
       }
 
-      //...for the mod4 file
-      first_i = -1;
-      size = data.getSize("mod4");
-      for(last_i = 0; last_i < size; last_i++){
-         tt2000_parts = CDFTT2000.breakdown(data.epoch_mod4[last_i]);
-         rec_date = 
-            tt2000_parts[2] + //day
-            (100 * tt2000_parts[1]) + //month
-            (10000 * (tt2000_parts[0] - 2000)); //year
-         if(first_i == -1) {
-            if(rec_date == date){
-               //found the first_i index
-               first_i = last_i;
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      try{
+         List<Future<Void>> results = new ArrayList<Future<Void>>();
+         for(ProductTask task : tasks){
+            results.add(pool.submit(task));
+         }
+
+         //wait for every product, then pass along the first failure
+         CDFException error = null;
+         for(Future<Void> result : results){
+            try{
+               result.get();
+            }catch(ExecutionException ex){
+               if(ex.getCause() instanceof CDFException){
+                  if(error == null){error = (CDFException)ex.getCause();}
+               }else if(ex.getCause() instanceof RuntimeException){
+                  throw (RuntimeException)ex.getCause();
+               }else{
+                  throw new RuntimeException(ex.getCause());
+               }
+            }catch(InterruptedException ex){
+               Thread.currentThread().interrupt();
+               throw new RuntimeException(ex);
             }
-         }else if(rec_date > date){
-            break;
          }
+         if(error != null){throw error;}
+      }finally{
+         pool.shutdown();
       }
-      if(first_i != -1 && (last_i - first_i) > 0){
-         doMspcCdf(first_i, last_i, date);
-         doRcntCdf(first_i, last_i, date);  
-         doGpsCdf(first_i, last_i, date);
+   }
+
+   //writes one product file for one date
+   private class ProductTask implements Callable<Void>{
+      private final int product, first, last, date;
+
+      public ProductTask(final int product, final int[] range, final int date){
+         this.product = product;
+         this.first = range[0];
+         this.last = range[1];
+         this.date = date;
       }
 
-      //...for the 4Hz file
-      first_i = -1;
-      size = data.getSize("4Hz");
-      for(last_i = 0; last_i < size; last_i += 4){
-         tt2000_parts = CDFTT2000.breakdown(data.epoch_4Hz[last_i]);
-         rec_date = 
-            tt2000_parts[2] + //day
-            (100 * tt2000_parts[1]) + //month
-            (10000 * (tt2000_parts[0] - 2000)); //year
-         if(first_i == -1) {
-            if(rec_date == date){
-               //found the first_i index
-               first_i = last_i;
-            }
-         }else if(rec_date > date){
-            break;
+      public Void call() throws CDFException{
+         switch(product){
+            case MISC:
+               doMiscCdf(first, last, date);
+               break;
+            case MAGN:
+               doMagCdf(first, last, date);
+               break;
+            case FSPC:
+               doFspcCdf(first, last, date); 
+               break;
+            case MSPC:
+               doMspcCdf(first, last, date);
+               break;
+            case RCNT:
+               doRcntCdf(first, last, date);  
+               break;
+            case EPHM:
+               doGpsCdf(first, last, date);
+               break;
+            case SSPC:
+               doSspcCdf(first, last, date);  
+               break;
+            case HKPG:
+               doHkpgCdf(first, last, date);  
+               break;
          }
+         return null;
       }
-      if(first_i != -1 && (last_i - first_i) > 0){
-         //make sure the first and last records are not mid-frame
-         //first_i = Math.max(0, (first_i - (first_i % 4)));
-         //last_i = Math.min(size, (last_i + 4 - (last_i % 4)));
+   }
+
+   //Finds the first and last (exclusive) records of a cadence that fall on
+   //the given date. Returns null if there are none. 4Hz and 20Hz records
+   //are checked one frame at a time so a frame is never split between days.
+   private int[] findDateRange(final Cadence cadence, final int date){
+      int first_i, last_i, size, step, frames;
+
+      size = data.getSize(cadence);
+      step = cadence.perFrame();
 
-         doMagCdf(first_i, last_i, date);
+      if(!epochsSorted(cadence)){
+         return scanDateRange(cadence, size, step, date);
       }
 
-      //...for the 20Hz file
-      first_i = -1;
-      size = data.getSize("20Hz");
-      for(last_i = 0; last_i < size; last_i += 20){
-         tt2000_parts = CDFTT2000.breakdown(data.epoch_20Hz[last_i]);
-         rec_date = 
-            tt2000_parts[2] + //day
-            (100 * tt2000_parts[1]) + //month
-            (10000 * (tt2000_parts[0] - 2000)); //year
+      //binary search the frame aligned records for the day boundaries
+      frames = (size + step - 1) / step;
+      first_i = firstDateRec(cadence, frames, step, date);
+      if(
+         first_i == frames || 
+         recDate(data.getEpoch(cadence, first_i * step)) != date
+      ){
+         return null;
+      }
+      last_i = firstDateRec(cadence, frames, step, date + 1);
+
+      return new int[] {first_i * step, last_i * step};
+   }
+
+   //returns the first of the frame aligned records that falls on or after
+   //the given date, or "frames" if there is no such record
+   private int firstDateRec(
+      final Cadence cadence, final int frames, final int step, final int date
+   ){
+      int low = 0, high = frames, mid;
+      while(low < high){
+         mid = (low + high) >>> 1;
+         if(recDate(data.getEpoch(cadence, mid * step)) < date){low = mid + 1;}
+         else{high = mid;}
+      }
+      return low;
+   }
+
+   //Linear version of findDateRange for epochs that are not in order
+   private int[] scanDateRange(
+      final Cadence cadence, final int size, final int step, final int date
+   ){
+      int first_i = -1, last_i;
+      long rec_date = 0;
+
+      for(last_i = 0; last_i < size; last_i += step){
+         rec_date = recDate(data.getEpoch(cadence, last_i));
          if(first_i == -1) {
             if(rec_date == date){
                //found the first_i index
@@ -264,14 +381,60 @@ public abstract class CDFWriter implements CDFConstants, CDFFillerMethods{
             break;
          }
       }
+
       if(first_i != -1 && (last_i - first_i) > 0){
-         //make sure the first and last records are not mid-frame
-         //first_i = Math.max(0, (first_i - (first_i % 20)));
-         //last_i = Math.min(size, (last_i + 20 - (last_i % 20)));
+         return new int[] {first_i, last_i};
+      }
+      return null;
+   }
 
-         doFspcCdf(first_i, last_i, date); 
+   //TT2000 epoch of the start of a day, month counts from 0
+   public static long tt2000(
+      final long year, final long month, final long day
+   ) throws CDFException{
+      synchronized(TT2000_LOCK){
+         return CDFTT2000.fromUTCparts(year, month, day);
       }
    }
+
+   //splits an epoch into year, month, day, hour, minute, second, ms, us, ns
+   public static long[] tt2000Parts(final long epoch){
+      synchronized(TT2000_LOCK){
+         return CDFTT2000.breakdown(epoch);
+      }
+   }
+
+   //converts an epoch to a yymmdd date
+   private static long recDate(final long epoch){
+      long[] tt2000_parts = tt2000Parts(epoch);
+      return 
+         tt2000_parts[2] + //day
+         (100 * tt2000_parts[1]) + //month
+         (10000 * (tt2000_parts[0] - 2000)); //year
+   }
+
+   //checks, once per cadence, that the frame aligned epochs never decrease
+   private boolean epochsSorted(final Cadence cadence){
+      int cad_i = cadence.ordinal();
+      if(epochs_sorted[cad_i] == null){
+         int 
+            size = data.getSize(cadence),
+            step = cadence.perFrame();
+         boolean sorted = true;
+
+         for(int rec_i = step; rec_i < size; rec_i += step){
+            if(
+               data.getEpoch(cadence, rec_i) < 
+               data.getEpoch(cadence, rec_i - step)
+            ){
+               sorted = false;
+               break;
+            }
+         }
+         epochs_sorted[cad_i] = sorted;
+      }
+      return epochs_sorted[cad_i];
+   }
    
    public static void copyFile(File sourceFile, File destFile, boolean clobber){
       try{
@@ -285,17 +448,12 @@ public abstract class CDFWriter implements CDFConstants, CDFFillerMethods{
             destFile.createNewFile();
          }
    
-         FileChannel source = null;
-         FileChannel destination = null;
+         FileOutputStream destination = null;
       
          try{
-            source = new FileInputStream(sourceFile).getChannel();
-            destination = new FileOutputStream(destFile).getChannel();
-            destination.transferFrom(source, 0, source.size());
+            destination = new FileOutputStream(destFile);
+            destination.write(readSkeleton(sourceFile));
          }finally {
-            if(source != null) {
-               source.close();
-            }
             if(destination != null) {
                destination.close();
             }
@@ -308,7 +466,42 @@ public abstract class CDFWriter implements CDFConstants, CDFFillerMethods{
       }
    }
 
+   //Skeleton files are copied for every product on every day, so each one 
+   //is only read from disk the first time it is used.
+   private static synchronized byte[] readSkeleton(File sourceFile)
+      throws IOException
+   {
+      String path = sourceFile.getPath();
+      byte[] contents = skeletons.get(path);
+
+      if(contents == null){
+         FileInputStream source = new FileInputStream(sourceFile);
+         try{
+            contents = new byte[(int)sourceFile.length()];
+            int read = 0;
+            while(read < contents.length){
+               int n = source.read(contents, read, contents.length - read);
+               if(n < 0){
+                  throw new IOException("Unexpected end of " + path);
+               }
+               read += n;
+            }
+         }finally{
+            source.close();
+         }
+         skeletons.put(path, contents);
+      }
+
+      return contents;
+   }
+
    public static CDF openCDF(String fileName){
+      synchronized(CDF_LOCK){
+         return open(fileName);
+      }
+   }
+
+   private static CDF open(String fileName){
 
       CDF cdf = null;
       try{
@@ -332,5 +525,37 @@ public abstract class CDFWriter implements CDFConstants, CDFFillerMethods{
       
       return cdf;
    }
+
+   public static void closeCDF(CDF cdf) throws CDFException{
+      synchronized(CDF_LOCK){
+         cdf.close();
+      }
+   }
+
+   //writes the records of a variable that has one value per record
+   public static void putRecords(
+      final CDF cdf, final String name, final long numOfRecs, 
+      final Object data
+   ) throws CDFException{
+      putRecords(
+         cdf, name, numOfRecs, 
+         new long[] {0}, new long[] {1}, new long[] {1}, 
+         data
+      );
+   }
+
+   public static void putRecords(
+      final CDF cdf, final String name, final long numOfRecs, 
+      final long[] indices, final long[] counts, final long[] intervals, 
+      final Object data
+   ) throws CDFException{
+      synchronized(CDF_LOCK){
+         Variable var = cdf.getVariable(name);
+         var.putHyperData(
+            var.getNumWrittenRecords(), numOfRecs, 1, 
+            indices, counts, intervals, data
+         );
+      }
+   }
  }
 
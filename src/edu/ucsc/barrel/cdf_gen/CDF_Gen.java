@@ -26,39 +26,32 @@ Description:
 
 package edu.ucsc.barrel.cdf_gen;
 
+
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
 public class CDF_Gen{
    
-   public static DataHolder data;
-   private static DataCollector dataPull;
-   private static LevelZero L0;
-   
    private static ArrayList<String> servers = new ArrayList<String>();
    private static ArrayList<String> payloads = new ArrayList<String>();
    private static Map<String, String> settings = new HashMap<String, String>();
    
-   //Directory and file settings
-   private static String output_Dir = "out";
-   public static String tlm_Dir;
-	public static String L0_Dir;
-   public static String L1_Dir;
-   public static String L2_Dir;
    public static Logger log;
    
    public static void main(String[] args){
-      int time_cnt = 0;
-      //array to hold payload id, lauch order, and launch site
-		String[] payload = new String[3];
-		
       //create a log file
       log = new Logger("log.txt");
 
@@ -72,159 +65,131 @@ public class CDF_Gen{
       
       //read the ini file and command line arguments
       loadConfig(args);
-      
-		//for each payload, create an object to download the files,
-      // read the list of data files on each server, then download the files
+      CDFWriter.checkProducts();
+
+      //process each day in turn. Each day's run adds to the CDF files of the 
+      //days on either side of it, so they have to be done in order
+      for(String date : expandDates(getSetting("date"))){
+         settings.put("date", date);
+         processDate();
+      }
+
+      //close the log file
+      log.close();
+   }
+
+   //Turns the date setting into a list of days. The setting can either be a
+   //single day, YYMMDD, or an inclusive range of days, YYMMDD-YYMMDD.
+   public static List<String> expandDates(String setting){
+      List<String> dates = new ArrayList<String>();
+      String[] ends = setting.split("-");
+
+      if(ends.length != 2){
+         dates.add(setting);
+         return dates;
+      }
+
+      int first = Integer.parseInt(ends[0].trim());
+      int last = Integer.parseInt(ends[1].trim());
+      if(last < first){
+         System.out.println("Date range " + setting + " ends before it starts.");
+         return dates;
+      }
+
+      Calendar dateObj = Calendar.getInstance();
+      dateObj.clear();
+      dateObj.set(2000 + first / 10000, (first / 100) % 100 - 1, first % 100);
+
+      for(int date = first; date <= last;){
+         dates.add(String.format("%06d", date));
+
+         dateObj.add(Calendar.DATE, 1);
+         date = 
+            ((dateObj.get(Calendar.YEAR) - 2000) * 10000) + 
+            ((dateObj.get(Calendar.MONTH) + 1) * 100) + 
+            dateObj.get(Calendar.DATE);
+      }
+
+      return dates;
+   }
+
+   //Creates all of the requested files for each payload on the current date.
+   //By default the payloads are done one after another, setting 
+   //payload_threads processes that many payloads at a time.
+   private static void processDate(){
+      //the energy edge cache is shared by every payload, so its counts are
+      //reported once for the whole day
+      long 
+         edge_hits = SpectrumExtract.getEdgeCacheHits(),
+         edge_misses = SpectrumExtract.getEdgeCacheMisses();
+
+      List<PayloadContext> contexts = new ArrayList<PayloadContext>();
       for(String payload_i : payloads){
-			String
-				date = "000000",
-				id = "00",
-				flt = "00",
-				stn = "0",
-				revNum = "00",
-            mag = "0000",
-            dpu = "00";
-			
-			//break payload apart into id, flight number and launch station
-			String[] payload_parts = payload_i.split(",");
-			if(payload_parts[0] != null){id = payload_parts[0];}
-			if(payload_parts[1] != null){flt = payload_parts[1];}
-			if(payload_parts[2] != null){stn = payload_parts[2];}
-			if(payload_parts[3] != null){mag = payload_parts[3];}
-			if(payload_parts[3] != null){dpu = payload_parts[4];}
-		   
-         //set output paths
-         if(getSetting("outDir") != ""){
-			   //check if user specified a place to store the files
-				output_Dir = getSetting("outDir");
-			}
-         tlm_Dir = 
-            output_Dir + "/tlm/" + id + "/" + getSetting("date") + "/";
-         L0_Dir = 
-            output_Dir + "/l0/" + id + "/" + getSetting("date") + "/";
-         L1_Dir = 
-            output_Dir + "/l1/" + id + "/";
-         L2_Dir = 
-            output_Dir + "/l2/" + id + "/";
-         
-         //set working payload
-         settings.put("currentPayload", payload_i);
-         
-         //create a new storage object
-         data = new DataHolder(payload_i);
-         
-         //Figure out where the input files are coming from
-         if(getSetting("local") == ""){
-            dataPull =
-				   new DataCollector(tlm_Dir, servers, id, settings.get("date"));
-            
-            //read each repository and build a list of data file URLs
-            dataPull.getFileList();
-            
-            //download each file after the URL list is made
-            dataPull.getFiles();
-         }else{
-            //a telemetry file was provided so instead of creating one we will
-            //just change the tlm directory
-            tlm_Dir = getSetting("local");
+         contexts.add(
+            new PayloadContext(payload_i, getSetting("date"), servers)
+         );
+      }
+
+      processPayloads(contexts);
+
+      edge_hits = SpectrumExtract.getEdgeCacheHits() - edge_hits;
+      edge_misses = SpectrumExtract.getEdgeCacheMisses() - edge_misses;
+      if(edge_hits + edge_misses > 0){
+         System.out.println(
+            "Energy edge cache: " + edge_hits + " hits, " + 
+            edge_misses + " misses"
+         );
+      }
+   }
+
+   //runs each payload's context, payload_threads of them at a time
+   private static void processPayloads(List<PayloadContext> contexts){
+      int threads = 1;
+      if(!getSetting("payload_threads").equals("")){
+         threads = Integer.parseInt(getSetting("payload_threads"));
+      }
+      threads = Math.max(1, Math.min(threads, contexts.size()));
+
+      if(threads == 1){
+         for(PayloadContext context : contexts){
+            context.call();
          }
-         
-         //Create level zero object and convert the data files to a level 0 file
-         try{
-            System.out.println("Creating Level Zero...");
-            L0 = new LevelZero(
-               data,
-               Integer.parseInt(settings.get("frameLength")), 
-               settings.get("syncWord"),
-               tlm_Dir, 
-               L0_Dir,
-               id,
-					flt,
-					stn,
-               dpu,
-               getSetting("date")
-            );
-            L0.processRawFiles();
-            L0.finish();
-            System.out.println(
-               "Completed Level 0 for payload " + getSetting("currentPayload")
-            );
-         
-            //If we didn't get any data, move on to the next payload.
-            if(data.getSize("1Hz") > 0){
-            
-               //calculate throughput value
-               System.out.println(
-                     "Payload " + getSetting("currentPayload") + 
-                     " Throughput: " + (100 * data.getSize("1Hz") - 1) /
-   			      (data.frame_1Hz[data.getSize("1Hz") - 1] - 
-   			      (data.frame_1Hz[0]))
-   			      + " %"
-   			   );
-            
-               //Fill the time variable
-               ExtractTiming barrel_time = 
-                  new ExtractTiming(getSetting("date"));
-               barrel_time.fixWeekOffset();
-               barrel_time.getTimeRecs();
-               barrel_time.fillModels();
-               barrel_time.fillEpoch();
-               barrel_time = null;
-
-               if(getSetting("L").indexOf("1") > -1){
-                  //create Level One 
-                  LevelOne L1 =
-						   new LevelOne(getSetting("date"), id, flt, stn, L1_Dir);
-                  L1 = null;
-               }
-               
-               if(getSetting("L").indexOf("2") > -1){
-                  //create a set of linear models that track the location of
-                  //the 511 line and store them in the DataHolder object
-                  int 
-                     total_specs = data.getSize("mod32"),
-                     start_i = 0,
-                     stop_i = 0,
-                     max_recs = 20;
-                  
-                  System.out.println("Starting Level Two...");
-                  System.out.println("Locating 511 line...");
-
-                  while(start_i < total_specs){
-                     if((start_i + (2 * max_recs)) > total_specs){
-                        stop_i = total_specs;
-                     }else{
-                        stop_i = start_i + max_recs;
-                     }
-
-                     SpectrumExtract.do511Fits(start_i, stop_i);
-                     start_i = stop_i;
-                  }
-                  fill511Gaps();
-
-                  //create Level Two
-                  LevelTwo L2 =
-						   new LevelTwo(
-                        getSetting("date"), id, flt, stn, L2_Dir
-                     );
-
-                  L2 = null;
+         return;
+      }
+
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      try{
+         List<Future<Void>> results = new ArrayList<Future<Void>>();
+         for(PayloadContext context : contexts){
+            results.add(pool.submit(context));
+         }
+
+         //wait for every payload, then pass along the first failure
+         RuntimeException error = null;
+         for(Future<Void> result : results){
+            try{
+               result.get();
+            }catch(ExecutionException ex){
+               if(error != null){continue;}
+               if(ex.getCause() instanceof RuntimeException){
+                  error = (RuntimeException)ex.getCause();
+               }else{
+                  error = new RuntimeException(ex.getCause());
                }
+            }catch(InterruptedException ex){
+               Thread.currentThread().interrupt();
+               throw new RuntimeException(ex);
             }
-         }catch(IOException ex){
-            System.out.println(
-               ex.getMessage()
-            );
          }
+         if(error != null){throw error;}
+      }finally{
+         pool.shutdown();
       }
-
-      //close the log file
-      log.close();
    }
    
-   public static void fill511Gaps(){
+   public static void fill511Gaps(DataHolder data){
       int 
-         size = data.getSize("mod32"),
+         size = data.getSize(Cadence.MOD32),
          step_size = 1, 
          start = 0;
       double 
@@ -350,4 +315,9 @@ public class CDF_Gen{
       if(settings.get(key) != null) return settings.get(key);
       else return "";
    }
+
+   //sets a value the same way a command line argument would, for the checks
+   static void setSetting(String key, String value){
+      settings.put(key, value);
+   }
 }
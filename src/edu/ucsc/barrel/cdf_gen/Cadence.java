@@ -0,0 +1,58 @@
+/*
+Cadence.java
+
+Description:
+   The rates at which data are stored in a DataHolder. Each cadence knows
+   how many records one frame produces and, for the multiplexed data, how
+   many frames make up one record.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+public enum Cadence{
+   ONE_HZ("1Hz", 1, 1),
+   FOUR_HZ("4Hz", 4, 1),
+   TWENTY_HZ("20Hz", 20, 1),
+   MOD4("mod4", 1, 4),
+   MOD32("mod32", 1, 32),
+   MOD40("mod40", 1, 40);
+
+   private final String label;
+   private final int per_frame, group;
+
+   Cadence(final String label, final int per_frame, final int group){
+      this.label = label;
+      this.per_frame = per_frame;
+      this.group = group;
+   }
+
+   //number of records filled by each frame
+   public int perFrame(){return per_frame;}
+
+   //number of frames that make up one record
+   public int group(){return group;}
+
+   //the frame number that starts the record containing fc
+   public long groupStart(final long fc){
+      return group == 1 ? fc : fc - ((int)fc % group);
+   }
+
+   public String toString(){return label;}
+}
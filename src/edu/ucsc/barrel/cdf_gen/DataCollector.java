@@ -4,6 +4,8 @@ dataCollector.java
 Description:
    Downloads files from each server listed in ini file.
    Saves all files to a directory tree as ./DATAROOT/payloadX/out/tlm/DATE
+   Files that are already up to date are not downloaded again, so a run that
+   was interrupted can be restarted and will only fetch what is missing.
 
    ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
    This file is part of The BARREL CDF Generator.
@@ -30,20 +32,114 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.net.URLConnection;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 public class DataCollector{
-   private ArrayList<String> urls = new ArrayList<String>();
+   //files are downloaded to a name with this suffix and renamed when done
+   public static final String PART_SUFFIX = ".part";
+
+   //default limits, each can be changed in the ini file
+   private static final int
+      DOWNLOAD_THREADS = 8,
+      SERVER_CONNECTIONS = 4,
+      DOWNLOAD_RETRIES = 3;
+   private static final long RETRY_DELAY = 1000;//ms, doubled for each retry
+
+   //Open connections allowed to each server. These are shared by every
+   //DataCollector so payloads processed at the same time share the limit.
+   private static final Map<String, Semaphore> connections = 
+      new HashMap<String, Semaphore>();
+
+   //each file name and the urls it can be downloaded from, in server order
+   private Map<String, List<String>> urls = 
+      new LinkedHashMap<String, List<String>>();
    private ArrayList<String> serverList = new ArrayList<String>();
    private String outDir = ".";
-   private String outFile;
    private String currentPayload;
    private String currentDate;
+   private int threads, retries;
    
+   //A file handed out by streamFiles(). The download may still be running,
+   //await() waits for it to finish. The end of the queue is marked by a
+   //Download with no file.
+   public static class Download{
+      private final File file;
+      private final Future<Boolean> result;
+
+      private Download(final File file, final Future<Boolean> result){
+         this.file = file;
+         this.result = result;
+      }
+
+      public boolean isEnd(){return file == null;}
+
+      //Waits for the download to finish. Returns the file, or null if the
+      //download failed and there is no older copy of it to use.
+      public File await() throws InterruptedException{
+         try{
+            result.get();
+         }catch(ExecutionException ex){
+            System.out.println(
+               "Could not download file: " + ex.getCause().getMessage()
+            );
+         }
+         return file.exists() ? file : null;
+      }
+   }
+
+   private static final Download END = new Download(null, null);
+
+   //The downloads started by streamFiles(). Whoever reads the files must
+   //call cancel() when it stops, or a download waiting for room in the
+   //queue would wait forever if the reader gave up early.
+   public static class Stream{
+      private final BlockingQueue<Download> queue;
+      private final ExecutorService pool;
+      private Thread producer;
+
+      private Stream(
+         final BlockingQueue<Download> queue, final ExecutorService pool
+      ){
+         this.queue = queue;
+         this.pool = pool;
+      }
+
+      //waits for the next file, the last file is followed by an end marker
+      public Download take() throws InterruptedException{
+         return queue.take();
+      }
+
+      //stops handing out files and drops any downloads still running
+      public void cancel(){
+         producer.interrupt();
+         queue.clear();
+         pool.shutdownNow();
+      }
+   }
+
    public DataCollector(
       final String path, final ArrayList<String> servers, 
       final String payload, final String date
@@ -52,38 +148,176 @@ public class DataCollector{
       serverList = servers;
       currentPayload = payload;
       currentDate = date;
+
+      threads = intSetting("download_threads", DOWNLOAD_THREADS);
+      retries = intSetting("download_retries", DOWNLOAD_RETRIES);
+   }
+
+   private static int intSetting(final String key, final int def){
+      if(CDF_Gen.getSetting(key).equals("")){return def;}
+      return Integer.parseInt(CDF_Gen.getSetting(key));
+   }
+
+   //get the connection limit for a server, creating it on first use
+   private static Semaphore connectionsTo(final String server){
+      synchronized(connections){
+         Semaphore limit = connections.get(server);
+         if(limit == null){
+            limit = new Semaphore(
+               Math.max(1, intSetting("server_connections", SERVER_CONNECTIONS)),
+               true
+            );
+            connections.put(server, limit);
+         }
+         return limit;
+      }
    }
    
    //Opens a stream from specified url and saves it to a local file. 
-   //Local file is named with the with the last section of the url after the 
-   // last "/".
+   //The data is written to a temporary file which is renamed once the whole
+   //file has arrived, so a partly downloaded file is never mistaken for a 
+   //complete one. The file is given the server's modification time.
    //Specified url should not have a trailing "/" 
-   private void downloadFile(final String url){
-	   try {
-         System.out.println("Getting: " + url);
-         
-         URL dlFile = new URL(url);
-         ReadableByteChannel rbc = Channels.newChannel(dlFile.openStream());
-         
-         FileOutputStream fos = new FileOutputStream(outDir + "/" + outFile);
-         fos.getChannel().transferFrom(rbc, 0, 1 << 24);
-         
-         fos.close();
-      }catch (MalformedURLException ex){
-         System.out.println("Error Downloading File: " + ex.getMessage()); 
-      }catch(IOException ex){
-         System.out.println("Error Downloading File: " + ex.getMessage());
+   private void downloadFile(final String url, final File dest)
+      throws IOException
+   {
+      System.out.println("Getting: " + url);
+
+      File part = new File(dest.getPath() + PART_SUFFIX);
+      URLConnection conn = new URL(url).openConnection();
+      long expected = conn.getContentLengthLong();
+      long modified = conn.getLastModified();
+      long received = 0;
+
+      InputStream in = conn.getInputStream();
+      OutputStream out = null;
+      try{
+         out = new FileOutputStream(part);
+         byte[] buf = new byte[65536];
+         for(int n = in.read(buf); n != -1; n = in.read(buf)){
+            out.write(buf, 0, n);
+            received += n;
+         }
+      }finally{
+         in.close();
+         if(out != null){out.close();}
+      }
+
+      if(expected >= 0 && received != expected){
+         part.delete();
+         throw new IOException(
+            "Received " + received + " of " + expected + " bytes from " + url
+         );
+      }
+
+      if(modified > 0){part.setLastModified(modified);}
+
+      try{
+         Files.move(
+            part.toPath(), dest.toPath(), 
+            StandardCopyOption.ATOMIC_MOVE, 
+            StandardCopyOption.REPLACE_EXISTING
+         );
+      }catch(AtomicMoveNotSupportedException ex){
+         Files.move(
+            part.toPath(), dest.toPath(), StandardCopyOption.REPLACE_EXISTING
+         );
+      }
+   }
+
+   //Checks the size and modification time the server reports for a file 
+   //against the local copy. If the server does not give a size, the file is
+   //assumed to be out of date.
+   private boolean isCurrent(final String url, final File dest)
+      throws IOException
+   {
+      if(!dest.exists()){return false;}
+
+      URLConnection conn = new URL(url).openConnection();
+      if(conn instanceof HttpURLConnection){
+         ((HttpURLConnection)conn).setRequestMethod("HEAD");
+      }
+      try{
+         long length = conn.getContentLengthLong();
+         long modified = conn.getLastModified();
+
+         if(length < 0 || length != dest.length()){return false;}
+         return modified <= 0 || modified == dest.lastModified();
+      }finally{
+         if(conn instanceof HttpURLConnection){
+            ((HttpURLConnection)conn).disconnect();
+         }else{
+            conn.getInputStream().close();
+         }
+      }
+   }
+
+   //Downloads a file from the first server that can supply it, retrying 
+   //each server with an increasing delay. Returns false if the local copy
+   //was already up to date.
+   private boolean fetch(final String name, final List<String> sources)
+      throws IOException
+   {
+      File dest = new File(outDir + "/" + name);
+      IOException last = null;
+
+      for(String url : sources){
+         Semaphore limit = connectionsTo(serverOf(url));
+
+         for(int attempt_i = 0; attempt_i <= retries; attempt_i++){
+            if(attempt_i > 0){
+               try{
+                  Thread.sleep(RETRY_DELAY << (attempt_i - 1));
+               }catch(InterruptedException ex){
+                  Thread.currentThread().interrupt();
+                  throw new IOException("Interrupted while getting " + url);
+               }
+            }
+
+            try{
+               limit.acquireUninterruptibly();
+               try{
+                  if(isCurrent(url, dest)){return false;}
+                  downloadFile(url, dest);
+                  return true;
+               }finally{
+                  limit.release();
+               }
+            }catch(IOException ex){
+               System.out.println(
+                  "Error Downloading File (attempt " + (attempt_i + 1) + 
+                  "): " + ex.getMessage()
+               );
+               last = ex;
+            }
+         }
+      }
+
+      throw last != null ? last : new IOException("No source for " + name);
+   }
+
+   //the part of a url that names the server it is on
+   private String serverOf(final String url){
+      for(String server_i : serverList){
+         if(url.startsWith(server_i)){return server_i;}
+      }
+      try{
+         URL u = new URL(url);
+         return u.getProtocol() + "://" + u.getAuthority();
+      }catch(MalformedURLException ex){
+         return url;
       }
    }
    
-   //If the output directory exists, get a listing and delete each file
+   //Make sure the output directory exists and clear out any partial 
+   //downloads left behind by an earlier run. Complete files are kept.
    private void testOutputDir(File tempDir){
       if(tempDir.exists()){
-         //if the output directory exists, delete all contents
          String[] list = tempDir.list();
          for(String list_i : list){
-            File tempFile = new File(outDir + "/" + list_i);
-            tempFile.delete();
+            if(list_i.endsWith(PART_SUFFIX)){
+               new File(tempDir, list_i).delete();
+            }
          }
       }else{
          tempDir.mkdirs();
@@ -99,20 +333,34 @@ public class DataCollector{
       for(String server_i : serverList){
          //repository entries are saved in the current directory 
          // and named "dailyManifest"
-         outFile = "dailyManifest";
-         downloadFile(
+         String manifestUrl =
             server_i + "/cgi-bin/fileLister.pl?date=" + currentDate + 
-            "&payload=payload" + currentPayload
-         );
+            "&payload=payload" + currentPayload;
+         File manifestFile = new File(outDir + "/dailyManifest");
+
+         //the list of files may have grown, so always get a new copy
+         manifestFile.delete();
+         try{
+            fetch("dailyManifest", Collections.singletonList(manifestUrl));
+         }catch(IOException ex){
+            System.out.println("Error Downloading File: " + ex.getMessage());
+         }
          
          //read the file manifest and add each file to the URL list
          try{
-            FileReader fr = new FileReader(outDir + "/dailyManifest");
+            FileReader fr = new FileReader(manifestFile);
             BufferedReader manifest = new BufferedReader(fr);   
          
             String fileName;
             while((fileName = manifest.readLine()) != null){
-               urls.add(
+               //a file listed by more than one server is only saved once,
+               //the other servers are used if the first one fails
+               List<String> sources = urls.get(fileName);
+               if(sources == null){
+                  sources = new ArrayList<String>();
+                  urls.put(fileName, sources);
+               }
+               sources.add(
                   server_i + "/soc-nas/payload" + currentPayload 
                   + "/raw/" + currentDate + "/" + fileName
                );
@@ -126,15 +374,107 @@ public class DataCollector{
       }
    }
    
-   //Loop through the url list and download each file to 
-   // the current date directory
+   //Download every file in the url list to the current date directory.
+   //Files are fetched several at a time, with a limit on the number of 
+   //connections to each server.
    public void getFiles(){
-      for(String url_i : urls){
-         //each data file is named based on the url
-         String[] temp = url_i.split("/");
-         outFile = temp[temp.length - 1];
-         
-         downloadFile(url_i);
+      int fetched = 0, skipped = 0, failed = 0;
+      ExecutorService pool = 
+         Executors.newFixedThreadPool(Math.max(1, threads));
+
+      try{
+         List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+         for(final Map.Entry<String, List<String>> file_i : urls.entrySet()){
+            results.add(pool.submit(new Callable<Boolean>(){
+               public Boolean call() throws IOException{
+                  return fetch(file_i.getKey(), file_i.getValue());
+               }
+            }));
+         }
+
+         for(Future<Boolean> result : results){
+            try{
+               if(result.get()){fetched++;}
+               else{skipped++;}
+            }catch(ExecutionException ex){
+               System.out.println(
+                  "Could not download file: " + ex.getCause().getMessage()
+               );
+               failed++;
+            }catch(InterruptedException ex){
+               Thread.currentThread().interrupt();
+               break;
+            }
+         }
+      }finally{
+         pool.shutdown();
       }
+
+      System.out.println(
+         "Payload " + currentPayload + ": downloaded " + fetched + 
+         ", already current " + skipped + ", failed " + failed
+      );
+   }
+
+   //Starts downloading every file in the url list and returns a stream of 
+   //the downloads in file name order, which is the order LevelZero reads a
+   //directory in. The queue is bounded so downloads only run a few files 
+   //ahead of whoever is taking them off the queue.
+   public Stream streamFiles(){
+      final int ahead = Math.max(1, threads) * 2;
+      final BlockingQueue<Download> queue = 
+         new ArrayBlockingQueue<Download>(ahead);
+      final ExecutorService pool = 
+         Executors.newFixedThreadPool(Math.max(1, threads));
+      final Map<String, List<String>> sorted = 
+         new TreeMap<String, List<String>>(urls);
+      final Stream stream = new Stream(queue, pool);
+
+      stream.producer = new Thread(new Runnable(){
+         public void run(){
+            int fetched = 0, skipped = 0, failed = 0;
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+            try{
+               for(final Map.Entry<String, List<String>> file_i : 
+                  sorted.entrySet()
+               ){
+                  Future<Boolean> result = 
+                     pool.submit(new Callable<Boolean>(){
+                        public Boolean call() throws IOException{
+                           return fetch(file_i.getKey(), file_i.getValue());
+                        }
+                     });
+                  results.add(result);
+                  queue.put(new Download(
+                     new File(outDir + "/" + file_i.getKey()), result
+                  ));
+               }
+               queue.put(END);
+
+               for(Future<Boolean> result : results){
+                  try{
+                     if(result.get()){fetched++;}
+                     else{skipped++;}
+                  }catch(ExecutionException ex){
+                     failed++;
+                  }
+               }
+            }catch(InterruptedException ex){
+               Thread.currentThread().interrupt();
+            }finally{
+               pool.shutdown();
+            }
+
+            System.out.println(
+               "Payload " + currentPayload + ": downloaded " + fetched + 
+               ", already current " + skipped + ", failed " + failed
+            );
+         }
+      }, "download-" + currentPayload);
+      stream.producer.setDaemon(true);
+      stream.producer.start();
+
+      return stream;
    }
 }
@@ -29,112 +29,15 @@ import java.math.BigInteger;
 import java.util.Arrays;
 
 public class DataHolder{
-   ///Largest number of frames we can store.
-   //Need to add error checking for to make sure that 
-   // the total amount of data never exceeds this
-   final static int MAX_FRAMES = 172800;
+   //Number of frames the storage arrays start out holding. The arrays
+   //double in size whenever they run out of room.
+   final static int INITIAL_FRAMES = 3600;
    
-   static public float[] hkpg_scale = new float[36];
-   static public float[] hkpg_offset = new float[36];
-   static public String[] hkpg_label = new String[36];
-   
-   static public final String[] rc_label = {
-	   "Interrupt", "LowLevel", "PeakDet", "HighLevel"
-   };
-   
-   private String payload;
-
-   //variables to keep track of valid altitude range
-   private float min_alt;
-   private boolean low_alt = true;
-   
-   //variables to  signal frame counter rollover
-   private int last_fc = 0;
-   private boolean fc_rollover = false;
-
-   //variable to track complete spectra
-   private int 
-      sspc_frames = 0,
-      mspc_frames = 0;
-
-   private short version = 0;
-
-   public short[]  
-      pps = new short[MAX_FRAMES],
-      payID = new short[MAX_FRAMES], 
-      ver = new short[MAX_FRAMES],
-      sats = new short[MAX_FRAMES / 40],
-      offset = new short[MAX_FRAMES / 40],
-      termStat = new short[MAX_FRAMES / 40],
-      modemCnt = new short[MAX_FRAMES / 40],
-      dcdCnt = new short[MAX_FRAMES / 40];
-   public long[]
-      gps_time = new long[MAX_FRAMES/4],
-      epoch_1Hz = new long[MAX_FRAMES],
-      epoch_4Hz = new long[MAX_FRAMES * 4],
-      epoch_20Hz = new long[MAX_FRAMES * 20],
-      epoch_mod4 = new long[MAX_FRAMES / 4],
-      epoch_mod32 = new long[MAX_FRAMES / 32],
-      epoch_mod40 = new long[MAX_FRAMES / 40];
-  public int[] 
-      ms_of_week = new int[MAX_FRAMES / 4]; 
-   public long[][]
-      hkpg = new long[40][MAX_FRAMES / 40],
-      rcnt = new long[4][MAX_FRAMES / 4];
-   public int[][]
-      gps = new int[4][MAX_FRAMES / 4]; 
-   public int[]
-      magx = new int[MAX_FRAMES * 4],
-      magy = new int[MAX_FRAMES * 4],
-      magz = new int[MAX_FRAMES * 4];
-   public double[]
-      time_model_slope = new double[MAX_FRAMES],
-      time_model_intercept = new double[MAX_FRAMES];
-   public int[]
-      frame_1Hz = new int[MAX_FRAMES],
-      frame_4Hz = new int[MAX_FRAMES * 4],
-      frame_20Hz = new int[MAX_FRAMES * 20],
-      frame_mod4 = new int[MAX_FRAMES / 4],
-      frame_mod32 = new int[MAX_FRAMES / 32],
-      frame_mod40 = new int[MAX_FRAMES / 40];
-   public int[] 
-      weeks = new int[MAX_FRAMES / 40],
-      cmdCnt = new int[MAX_FRAMES / 40],
-      gps_q = new int[MAX_FRAMES / 4],
-      pps_q = new int[MAX_FRAMES],
-      magn_q = new int[MAX_FRAMES * 4],
-      hkpg_q = new int[MAX_FRAMES / 40],
-      rcnt_q = new int[MAX_FRAMES / 4],
-      fspc_q = new int[MAX_FRAMES * 20],
-      mspc_q = new int[MAX_FRAMES / 4],
-      sspc_q = new int[MAX_FRAMES / 32];
-   public int[][] 
-      mspc = new int[MAX_FRAMES / 4][48],
-      sspc = new int[MAX_FRAMES / 32][256];
-   public int[] 
-      lc1 = new int[MAX_FRAMES * 20],
-      lc2 = new int[MAX_FRAMES * 20],
-      lc3 = new int[MAX_FRAMES * 20],
-      lc4 = new int[MAX_FRAMES * 20],
-      lc5 = new int[MAX_FRAMES * 20],
-      lc6 = new int[MAX_FRAMES * 20];
-   public float[]
-      peak511_bin = new float[MAX_FRAMES / 32];
+   static public final float[] hkpg_scale = new float[36];
+   static public final float[] hkpg_offset = new float[36];
+   static public final String[] hkpg_label = new String[36];
 
-   public int 
-      //record numbers are incrimented on the first record so
-      //they start at -1
-      rec_num_1Hz = -1, rec_num_4Hz = -1, rec_num_20Hz = -1,
-      rec_num_mod4 = -1, rec_num_mod32 = -1, rec_num_mod40 = -1;
-   public long firstFC = 0;
-
-   public int 
-      size_1Hz = 0, size_4Hz = 0, size_20Hz = 0, 
-      size_mod4 = 0, size_mod32 = 0, size_mod40 = 0;
-
-   public DataHolder(final String p){
-      payload = (p.split(","))[0];
-      
+   static{
       //fill the housekeeping reference arrays
       hkpg_scale[Constants.V0] = 0.0003052f;
       hkpg_scale[Constants.V1] = 0.0003052f;
@@ -223,61 +126,97 @@ public class DataHolder{
       hkpg_label[Constants.T13] = "T13_TermBatt";
       hkpg_label[Constants.T14] = "T14_TermCap";
       hkpg_label[Constants.T15] = "T15_CCStat";
+   }
+   
+   static public final String[] rc_label = {
+	   "Interrupt", "LowLevel", "PeakDet", "HighLevel"
+   };
+   
+   private String payload;
 
-      //fill all of the storage arrays with fill values
-      Arrays.fill(frame_1Hz, Constants.FC_FILL);
-      Arrays.fill(frame_4Hz, Constants.FC_FILL);
-      Arrays.fill(frame_20Hz, Constants.FC_FILL);
-      Arrays.fill(frame_mod4, Constants.FC_FILL);
-      Arrays.fill(frame_mod32, Constants.FC_FILL);
-      Arrays.fill(frame_mod40, Constants.FC_FILL);
-/*
-      Arrays.fill(epoch_1Hz, Constants.FC_FILL);
-      Arrays.fill(epoch_4Hz, Constants.FC_FILL);
-      Arrays.fill(epoch_20Hz, Constants.FC_FILL);
-      Arrays.fill(epoch_mod4, Constants.FC_FILL);
-      Arrays.fill(epoch_mod32, Constants.FC_FILL);
-      Arrays.fill(epoch_mod40, Constants.FC_FILL);
-*/
-      Arrays.fill(time_model_slope, Constants.FLOAT_FILL);
-      Arrays.fill(time_model_intercept, Constants.FLOAT_FILL);
-      Arrays.fill(payID, Constants.PAYID_FILL);
-      Arrays.fill(ver, Constants.VER_FILL);
-      Arrays.fill(pps, Constants.PPS_FILL);
-      Arrays.fill(magx, Constants.MAG_FILL);
-      Arrays.fill(magy, Constants.MAG_FILL);
-      Arrays.fill(magz, Constants.MAG_FILL);
-      Arrays.fill(ms_of_week, Constants.MS_WEEK_FILL);
-      Arrays.fill(gps[Constants.TIME_I], Constants.MS_WEEK_FILL);
-      Arrays.fill(gps[Constants.LAT_I], Constants.LAT_RAW_FILL);
-      Arrays.fill(gps[Constants.LON_I], Constants.LON_RAW_FILL);
-      Arrays.fill(gps[Constants.ALT_I], Constants.ALT_RAW_FILL);
-      Arrays.fill(lc1, Constants.FSPC_RAW_FILL);
-      Arrays.fill(lc2, Constants.FSPC_RAW_FILL);
-      Arrays.fill(lc3, Constants.FSPC_RAW_FILL);
-      Arrays.fill(lc4, Constants.FSPC_RAW_FILL);
-      Arrays.fill(lc5, Constants.FSPC_RAW_FILL);
-      Arrays.fill(lc6, Constants.FSPC_RAW_FILL);
-      Arrays.fill(rcnt[0], Constants.RCNT_FILL);
-      Arrays.fill(rcnt[1], Constants.RCNT_FILL);
-      Arrays.fill(rcnt[2], Constants.RCNT_FILL);
-      Arrays.fill(rcnt[3], Constants.RCNT_FILL);
-      Arrays.fill(sats, Constants.SATS_FILL);
-      Arrays.fill(offset, Constants.LEAP_SEC_FILL);
-      Arrays.fill(termStat, Constants.TERM_STAT_FILL);
-      Arrays.fill(modemCnt, Constants.MODEM_CNT_FILL);
-      Arrays.fill(dcdCnt, Constants.DCD_CNT_FILL);
-      Arrays.fill(weeks, Constants.WEEKS_FILL);
-      Arrays.fill(cmdCnt, Constants.CMD_CNT_FILL);
-      for(int var_i = 0; var_i < 40; var_i++){
-         Arrays.fill(hkpg[var_i], Constants.HKPG_FILL);
-      }
-      for(int[] rec: mspc){
-         Arrays.fill(rec, Constants.MSPC_RAW_FILL);
-      }
-      for(int[] rec: sspc){
-         Arrays.fill(rec, Constants.SSPC_RAW_FILL);
-      }
+   //variables to keep track of valid altitude range
+   private float min_alt;
+   private boolean low_alt = true;
+   
+   //variables to  signal frame counter rollover
+   private int last_fc = 0;
+   private boolean fc_rollover = false;
+
+   //set to false if a frame arrives with a lower frame counter than the last
+   private boolean frames_sorted = true;
+
+   //timing models built while frames are added, and the last mod4 record
+   //they were told about
+   private ExtractTiming timing = null;
+   private int timed_mod4 = 0;
+
+   //variable to track complete spectra
+   private int 
+      sspc_frames = 0,
+      mspc_frames = 0;
+
+   private short version = 0;
+
+   //values pulled out of the current frame by the frame layout
+   private long[] raw = new long[0];
+   private boolean[] raw_oor = new boolean[0];
+
+   //All of the storage arrays are allocated by the grow methods below.
+   //1Hz, 4Hz, and 20Hz arrays share a capacity counted in frames, the
+   //multiplexed arrays each keep their own capacity counted in records.
+   public short[]  
+      pps, payID, ver,
+      sats, offset, termStat, modemCnt, dcdCnt;
+   public long[]
+      gps_time,
+      epoch_1Hz,
+      epoch_mod4, epoch_mod32, epoch_mod40;
+  public int[] 
+      ms_of_week; 
+   public long[][]
+      hkpg = new long[40][],
+      rcnt = new long[4][];
+   public int[][]
+      gps = new int[4][]; 
+   public int[]
+      magx, magy, magz;
+   public double[]
+      time_model_slope, time_model_intercept;
+   public int[]
+      frame_1Hz,
+      frame_mod4, frame_mod32, frame_mod40;
+   public int[] 
+      weeks, cmdCnt,
+      gps_q, pps_q, magn_q, hkpg_q, rcnt_q, fspc_q, mspc_q, sspc_q;
+   public int[][] 
+      mspc, sspc;
+   public int[] 
+      lc1, lc2, lc3, lc4, lc5, lc6;
+   public float[]
+      peak511_bin;
+
+   private int
+      cap_frames = 0, cap_mod4 = 0, cap_mod32 = 0, cap_mod40 = 0;
+
+   public int 
+      //record numbers are incrimented on the first record so
+      //they start at -1
+      rec_num_1Hz = -1, rec_num_4Hz = -1, rec_num_20Hz = -1,
+      rec_num_mod4 = -1, rec_num_mod32 = -1, rec_num_mod40 = -1;
+   public long firstFC = 0;
+
+   public int 
+      size_1Hz = 0, size_4Hz = 0, size_20Hz = 0, 
+      size_mod4 = 0, size_mod32 = 0, size_mod40 = 0;
+
+   public DataHolder(final String p){
+      payload = (p.split(","))[0];
+      
+      //allocate the storage arrays, they will grow as frames are added
+      grow1Hz(INITIAL_FRAMES);
+      growMod4(INITIAL_FRAMES / 4);
+      growMod32(INITIAL_FRAMES / 32);
+      growMod40(INITIAL_FRAMES / 40);
 
       //set minimum altitude based on either command line argument or
       //default setting in the Constants class
@@ -294,71 +233,235 @@ public class DataHolder{
       }
    }
 
+   //resize the 1Hz, 4Hz, and 20Hz arrays to hold "frames" frames
+   private void grow1Hz(final int frames){
+      pps = grow(pps, frames, Constants.PPS_FILL);
+      payID = grow(payID, frames, Constants.PAYID_FILL);
+      ver = grow(ver, frames, Constants.VER_FILL);
+      epoch_1Hz = grow(epoch_1Hz, frames, 0);
+      time_model_slope = grow(time_model_slope, frames, Constants.FLOAT_FILL);
+      time_model_intercept = 
+         grow(time_model_intercept, frames, Constants.FLOAT_FILL);
+      frame_1Hz = grow(frame_1Hz, frames, Constants.FC_FILL);
+      pps_q = grow(pps_q, frames, 0);
+
+      magx = grow(magx, frames * 4, Constants.MAG_FILL);
+      magy = grow(magy, frames * 4, Constants.MAG_FILL);
+      magz = grow(magz, frames * 4, Constants.MAG_FILL);
+      magn_q = grow(magn_q, frames * 4, 0);
+
+      lc1 = grow(lc1, frames * 20, Constants.FSPC_RAW_FILL);
+      lc2 = grow(lc2, frames * 20, Constants.FSPC_RAW_FILL);
+      lc3 = grow(lc3, frames * 20, Constants.FSPC_RAW_FILL);
+      lc4 = grow(lc4, frames * 20, Constants.FSPC_RAW_FILL);
+      lc5 = grow(lc5, frames * 20, Constants.FSPC_RAW_FILL);
+      lc6 = grow(lc6, frames * 20, Constants.FSPC_RAW_FILL);
+      fspc_q = grow(fspc_q, frames * 20, 0);
+
+      cap_frames = frames;
+   }
+
+   private void growMod4(final int recs){
+      gps_time = grow(gps_time, recs, 0);
+      epoch_mod4 = grow(epoch_mod4, recs, 0);
+      frame_mod4 = grow(frame_mod4, recs, Constants.FC_FILL);
+      ms_of_week = grow(ms_of_week, recs, Constants.MS_WEEK_FILL);
+      gps[Constants.ALT_I] = 
+         grow(gps[Constants.ALT_I], recs, Constants.ALT_RAW_FILL);
+      gps[Constants.TIME_I] = 
+         grow(gps[Constants.TIME_I], recs, Constants.MS_WEEK_FILL);
+      gps[Constants.LAT_I] = 
+         grow(gps[Constants.LAT_I], recs, Constants.LAT_RAW_FILL);
+      gps[Constants.LON_I] = 
+         grow(gps[Constants.LON_I], recs, Constants.LON_RAW_FILL);
+      for(int var_i = 0; var_i < 4; var_i++){
+         rcnt[var_i] = grow(rcnt[var_i], recs, Constants.RCNT_FILL);
+      }
+      mspc = grow(mspc, recs, 48, Constants.MSPC_RAW_FILL);
+      gps_q = grow(gps_q, recs, 0);
+      rcnt_q = grow(rcnt_q, recs, 0);
+      mspc_q = grow(mspc_q, recs, 0);
+
+      cap_mod4 = recs;
+   }
+
+   private void growMod32(final int recs){
+      epoch_mod32 = grow(epoch_mod32, recs, 0);
+      frame_mod32 = grow(frame_mod32, recs, Constants.FC_FILL);
+      sspc = grow(sspc, recs, 256, Constants.SSPC_RAW_FILL);
+      sspc_q = grow(sspc_q, recs, 0);
+      peak511_bin = grow(peak511_bin, recs, 0);
+
+      cap_mod32 = recs;
+   }
+
+   private void growMod40(final int recs){
+      epoch_mod40 = grow(epoch_mod40, recs, 0);
+      frame_mod40 = grow(frame_mod40, recs, Constants.FC_FILL);
+      for(int var_i = 0; var_i < 40; var_i++){
+         hkpg[var_i] = grow(hkpg[var_i], recs, Constants.HKPG_FILL);
+      }
+      sats = grow(sats, recs, Constants.SATS_FILL);
+      offset = grow(offset, recs, Constants.LEAP_SEC_FILL);
+      termStat = grow(termStat, recs, Constants.TERM_STAT_FILL);
+      modemCnt = grow(modemCnt, recs, Constants.MODEM_CNT_FILL);
+      dcdCnt = grow(dcdCnt, recs, Constants.DCD_CNT_FILL);
+      weeks = grow(weeks, recs, Constants.WEEKS_FILL);
+      cmdCnt = grow(cmdCnt, recs, Constants.CMD_CNT_FILL);
+      hkpg_q = grow(hkpg_q, recs, 0);
+
+      cap_mod40 = recs;
+   }
+
+   //copy an array into a larger one and fill the new records
+   private static short[] grow(short[] old, final int size, final short fill){
+      int old_size = (old == null) ? 0 : old.length;
+      short[] grown = new short[size];
+      if(old != null){System.arraycopy(old, 0, grown, 0, old_size);}
+      Arrays.fill(grown, old_size, size, fill);
+      return grown;
+   }
+   private static int[] grow(int[] old, final int size, final int fill){
+      int old_size = (old == null) ? 0 : old.length;
+      int[] grown = new int[size];
+      if(old != null){System.arraycopy(old, 0, grown, 0, old_size);}
+      if(fill != 0){Arrays.fill(grown, old_size, size, fill);}
+      return grown;
+   }
+   private static long[] grow(long[] old, final int size, final long fill){
+      int old_size = (old == null) ? 0 : old.length;
+      long[] grown = new long[size];
+      if(old != null){System.arraycopy(old, 0, grown, 0, old_size);}
+      if(fill != 0){Arrays.fill(grown, old_size, size, fill);}
+      return grown;
+   }
+   private static float[] grow(float[] old, final int size, final float fill){
+      int old_size = (old == null) ? 0 : old.length;
+      float[] grown = new float[size];
+      if(old != null){System.arraycopy(old, 0, grown, 0, old_size);}
+      if(fill != 0){Arrays.fill(grown, old_size, size, fill);}
+      return grown;
+   }
+   private static double[] grow(
+      double[] old, final int size, final double fill
+   ){
+      int old_size = (old == null) ? 0 : old.length;
+      double[] grown = new double[size];
+      if(old != null){System.arraycopy(old, 0, grown, 0, old_size);}
+      if(fill != 0){Arrays.fill(grown, old_size, size, fill);}
+      return grown;
+   }
+   //spectra keep one row per record, only the new rows are allocated
+   private static int[][] grow(
+      int[][] old, final int size, final int width, final int fill
+   ){
+      int old_size = (old == null) ? 0 : old.length;
+      int[][] grown = new int[size][];
+      if(old != null){System.arraycopy(old, 0, grown, 0, old_size);}
+      for(int rec_i = old_size; rec_i < size; rec_i++){
+         grown[rec_i] = new int[width];
+         Arrays.fill(grown[rec_i], fill);
+      }
+      return grown;
+   }
+
    public int getVersion(){
       return this.version;
    }
 
-   public int getSize(String cadence){
-      if(cadence.equals("1Hz")){
-         return rec_num_1Hz + 1;
-      }else if(cadence.equals("4Hz")){
-         return rec_num_4Hz;
-      }else if(cadence.equals("20Hz")){
-         return rec_num_20Hz;
-      }else if(cadence.equals("mod4")){
-         return rec_num_mod4;
-      }else if(cadence.equals("mod32")){
-         return rec_num_mod32;
-      }else{
-         return rec_num_mod40;
-      }
+   public String getPayload(){
+      return this.payload;
    }
-  
-   public int convertIndex(
-      int old_i, long fc, final String old_cad, final String new_cad
-   ){
-      int fc_offset = 0, new_i = 0, step;
-      double multiplier;
-      int[] frames;
-
-      //figure out the index multiplier, fc_offset, and 
-      //get the new frameset based on input cadence
-      if(new_cad.equals("mod40")){
-         multiplier = 0.025;
-         frames = frame_mod40;
-         fc -= (int)fc % 40; //find the first frame number in this group
-      }
-      else if(new_cad.equals("mod32")){
-         multiplier = 0.03125;
-         frames = frame_mod32;
-         fc -= (int)fc % 32;
+
+   public int getSize(final Cadence cadence){
+      switch(cadence){
+         case ONE_HZ:
+            return rec_num_1Hz + 1;
+         case FOUR_HZ:
+            return rec_num_4Hz;
+         case TWENTY_HZ:
+            return rec_num_20Hz;
+         case MOD4:
+            return rec_num_mod4;
+         case MOD32:
+            return rec_num_mod32;
+         default:
+            return rec_num_mod40;
       }
-      else if(new_cad.equals("mod4")){
-         multiplier = 0.25;
-         frames = frame_mod4;
-         fc -= (int)fc % 4;
+   }
+
+   //Frame number of each record at the given cadence. The 4Hz and 20Hz 
+   //records share the 1Hz frame numbers, see getFrame().
+   public int[] getFrames(final Cadence cadence){
+      switch(cadence){
+         case ONE_HZ:
+         case FOUR_HZ:
+         case TWENTY_HZ:
+            return frame_1Hz;
+         case MOD4:
+            return frame_mod4;
+         case MOD32:
+            return frame_mod32;
+         default:
+            return frame_mod40;
       }
-      else if(new_cad.equals("1Hz")){
-         multiplier = 1;
-         frames = frame_1Hz;
+   }
+
+   //Frame number of a record at the given cadence. Every 4Hz and 20Hz 
+   //record comes from the 1Hz frame it was sent in.
+   public int getFrame(final Cadence cadence, final int rec_i){
+      switch(cadence){
+         case ONE_HZ:
+            return frame_1Hz[rec_i];
+         case FOUR_HZ:
+            return frame_1Hz[rec_i / 4];
+         case TWENTY_HZ:
+            return frame_1Hz[rec_i / 20];
+         case MOD4:
+            return frame_mod4[rec_i];
+         case MOD32:
+            return frame_mod32[rec_i];
+         default:
+            return frame_mod40[rec_i];
       }
-      else if(new_cad.equals("4Hz")){
-         multiplier = 4;
-         frames = frame_4Hz;
+   }
+
+   //Epoch of a record at the given cadence. The 4Hz and 20Hz epochs are not
+   //stored; they are spread evenly across the second after each 1Hz epoch.
+   public long getEpoch(final Cadence cadence, final int rec_i){
+      switch(cadence){
+         case ONE_HZ:
+            return epoch_1Hz[rec_i];
+         case FOUR_HZ:
+            return epoch_1Hz[rec_i / 4] + ((rec_i % 4) * 250000000L);
+         case TWENTY_HZ:
+            return epoch_1Hz[rec_i / 20] + ((rec_i % 20) * 50000000L);
+         case MOD4:
+            return epoch_mod4[rec_i];
+         case MOD32:
+            return epoch_mod32[rec_i];
+         default:
+            return epoch_mod40[rec_i];
       }
-      else{
-         multiplier = 20;
-         frames = frame_20Hz;
+   }
+  
+   //Returns the first record in frames[0..size) whose frame number is at
+   //least fc, or the last record if there is none.
+   public int findRecord(final int[] frames, final int size, final long fc){
+      if(frames_sorted){
+         //binary search for the first frame >= fc
+         int low = 0, high = size;
+         while(low < high){
+            int mid = (low + high) >>> 1;
+            if(frames[mid] < fc){low = mid + 1;}
+            else{high = mid;}
+         }
+         return (low < size) ? low : size - 1;
       }
-      /*
-      if(old_cad.equals("mod40")){multiplier /= 0.025;}
-      else if(old_cad.equals("mod32")){multiplier /= 0.03125;}
-      else if(old_cad.equals("mod4")){multiplier /= 0.25;}
-      else if(old_cad.equals("4Hz")){multiplier /= 4;}
-      else if(old_cad.equals("20Hz")){multiplier /= 20;}
-      */
-
-      while(new_i < getSize(new_cad)){
+
+      //frames arrived out of order, fall back to checking every record
+      int new_i = 0;
+      while(new_i < size){
          if(frames[new_i] != Constants.FC_FILL){
             if(frames[new_i] >= fc){return new_i;}
          }
@@ -366,64 +469,74 @@ public class DataHolder{
       }
 
       return new_i - 1;
+   }
 
-      /*
-      //get initial guess for the new index
-      new_i = (int)(old_i * multiplier);
-      
-      //check if the initial guess was right
-      if(fc == frames[new_i]){return new_i;}
-      else if(frames[new_i] < fc && frames[new_i] != Constants.FC_FILL){
-         step = 1;
-      }
-      else{
-         step = -1;
-         //make sure the guess is within range 
-         new_i = (new_i > frames.length) ? frames.length - 2 : new_i; 
-      }
+   //true while every frame has come after the one before it
+   public boolean framesSorted(){return frames_sorted;}
 
-      //correct new_i based on frame number
-      while((new_i < frames.length - 1) && (new_i > 0)){
-         if(frames[new_i] == fc){
-            //found the target fc. done!
-            break;
-         }
-         else if(step * (fc - frames[new_i]) < 0){
-            //crossed over a gap that contained target fc.
-            //get fc that is just after the gap
-            if(step == -1){new_i++;}
-            break;
-         }else{
-            //have not passed the target fc yet
-            new_i += step;
-         }
+   //Sets the timing models to build as frames are added. The models are 
+   //updated each time a mod4 group is finished.
+   public void setTiming(final ExtractTiming timing){
+      this.timing = timing;
+   }
+
+   //Returns the record at the given cadence that holds frame fc, or the
+   //first record after it if that frame is missing.
+   public int convertIndex(final long fc, final Cadence cadence){
+      int 
+         step = cadence.perFrame(),
+         size = getSize(cadence),
+         rec_i;
+
+      if(step == 1){
+         return findRecord(getFrames(cadence), size, cadence.groupStart(fc));
       }
-*/
+
+      //find the frame at 1Hz, then its first record at the faster cadence
+      rec_i = findRecord(frame_1Hz, size / step, fc);
+      if(rec_i >= 0 && frame_1Hz[rec_i] >= fc){return rec_i * step;}
+      return size - 1;
+   }
+
+   public int addFrame(BigInteger frame, int dpu_id){
+      return addFrame(new FrameView(frame.toByteArray()), dpu_id);
    }
 
-   public void addFrame(BigInteger frame, int dpu_id){
+   //Adds a frame to the data arrays. Returns the FrameIndex flags that
+   //describe what happened to the frame.
+   public int addFrame(FrameView frame, int dpu_id){
       //Breakdown frame counter words: 
       //save the frame counter parts as temp variables,
       //they will be written to the main structure once rec_num is calculated.
       //First 5 bits are version, next 6 are id, last 21 are FC
-      this.version =
-         frame.shiftRight(1691).and(BigInteger.valueOf(31)).shortValue();
-      short tmpPayID = 
-         frame.shiftRight(1685).and(BigInteger.valueOf(63)).shortValue();
-      int tmpFC = 
-         frame.shiftRight(1664).and(BigInteger.valueOf(2097151)).intValue();
-      int tmpGPS = 
-         frame.shiftRight(1632).and(BigInteger.valueOf(4294967295L)).intValue();
+      this.version = (short)frame.bits(
+         FrameLayout.VERSION.offset, FrameLayout.VERSION.width
+      );
+      short tmpPayID = (short)frame.bits(
+         FrameLayout.PAYLOAD_ID.offset, FrameLayout.PAYLOAD_ID.width
+      );
+      int tmpFC = (int)frame.bits(
+         FrameLayout.FRAME_COUNTER.offset, FrameLayout.FRAME_COUNTER.width
+      );
       
       //check to make sure we have a frame from the correct payload
       if(dpu_id != tmpPayID){
          System.out.println("Bad payload ID in frame: " + tmpFC);
          System.out.println("Found: " + tmpPayID + " Should be: " + dpu_id);
-         return;
+         return 0;
       }
+
+      //pull the rest of the fields out of the frame
+      FrameLayout layout = FrameLayout.forVersion(this.version);
+      if(raw.length < layout.size()){
+         raw = new long[layout.size()];
+         raw_oor = new boolean[layout.size()];
+      }
+      layout.decode(frame, raw, raw_oor);
+      int tmpGPS = (int)raw[layout.start(FrameLayout.GPS)];
       
       //validate frame number
-      if(tmpFC <= Constants.FC_MIN || tmpFC > Constants.FC_MAX){return;}
+      if(tmpFC <= Constants.FC_MIN || tmpFC > Constants.FC_MAX){return 0;}
 
       //check for fc rollover
       if(fc_rollover){
@@ -456,11 +569,11 @@ public class DataHolder{
       if(low_alt){
          if((mod4 == Constants.ALT_I) && ((tmpGPS / 1000000) >= min_alt)){
             low_alt = false;
-         }else{return;}
+         }else{return FrameIndex.ALT_GATED;}
       }else{
          if((mod4 == Constants.ALT_I) && ((tmpGPS / 1000000) < min_alt)){
             low_alt = true;
-            return;
+            return FrameIndex.ALT_GATED;
          }
       }
 
@@ -496,19 +609,22 @@ public class DataHolder{
          rec_num_mod40 = 0;
       }
 
+      //make room for this frame plus one spare record
+      if(rec_num_1Hz + 2 > cap_frames){grow1Hz(cap_frames * 2);}
+      if(rec_num_mod4 + 2 > cap_mod4){growMod4(cap_mod4 * 2);}
+      if(rec_num_mod32 + 2 > cap_mod32){growMod32(cap_mod32 * 2);}
+      if(rec_num_mod40 + 2 > cap_mod40){growMod40(cap_mod40 * 2);}
+
+      //the record lookups can only binary search if frames stay in order
+      if(rec_num_1Hz > 0 && tmpFC < frame_1Hz[rec_num_1Hz - 1]){
+         frames_sorted = false;
+      }
+
       //save the info from the frame counter word
       ver[rec_num_1Hz] = this.version;
       payID[rec_num_1Hz] = tmpPayID;
       frame_1Hz[rec_num_1Hz] = (int)tmpFC;
 
-      //figure out the other time scale frame counters
-      for(int rec_i = rec_num_4Hz; rec_i < rec_num_4Hz + 4; rec_i++){
-         frame_4Hz[rec_i] = frame_1Hz[rec_num_1Hz];
-      }
-      for(int rec_i = rec_num_20Hz; rec_i < rec_num_20Hz + 20; rec_i++){
-         frame_20Hz[rec_i] = frame_1Hz[rec_num_1Hz];
-      }
-     
       //calculate and save the first frame number of the current group
       frame_mod4[rec_num_mod4] = frame_1Hz[rec_num_1Hz] - mod4;
       frame_mod32[rec_num_mod32] = frame_1Hz[rec_num_1Hz] - mod32;
@@ -531,9 +647,8 @@ public class DataHolder{
       }
 
       //get gps info: 32 bits of mod4 gps data followed by 16 bits of pps data
-      gps[mod4][rec_num_mod4] =
-         frame.shiftRight(1632).and(BigInteger.valueOf(4294967295L)).
-            intValue();
+      gps[mod4][rec_num_mod4] = tmpGPS;
+      boolean gps_ok = true;
 
       switch(mod4){
          case Constants.ALT_I: 
@@ -543,6 +658,7 @@ public class DataHolder{
             ){
                gps[mod4][rec_num_mod4] = Constants.ALT_RAW_FILL;
                gps_q[rec_num_mod4] |= Constants.OUT_OF_RANGE;  
+               gps_ok = false;
             }
             else if(gps[mod4][rec_num_mod4] < Constants.MIN_SCI_ALT){
                gps_q[rec_num_mod4] |= Constants.LOW_ALT;
@@ -566,6 +682,7 @@ public class DataHolder{
             ){
                gps[mod4][rec_num_mod4] = Constants.MS_WEEK_FILL;
                gps_q[rec_num_mod4] |= Constants.OUT_OF_RANGE;  
+               gps_ok = false;
             }
             
 
@@ -589,6 +706,7 @@ public class DataHolder{
             ){
                gps[mod4][rec_num_mod4] = Constants.LAT_RAW_FILL;
                gps_q[rec_num_mod4] |= Constants.OUT_OF_RANGE;  
+               gps_ok = false;
             }
 
             if((gps_q[rec_num_mod4] & Constants.LOW_ALT) != 0){
@@ -609,6 +727,7 @@ public class DataHolder{
             ){
                gps[mod4][rec_num_mod4] = Constants.LON_RAW_FILL;
                gps_q[rec_num_mod4] |= Constants.OUT_OF_RANGE;  
+               gps_ok = false;
             }
 
             if((gps_q[rec_num_mod4] & Constants.LOW_ALT) != 0){
@@ -625,17 +744,10 @@ public class DataHolder{
       }
 
       //GPS PPS
-      pps[rec_num_1Hz] = 
-         frame.shiftRight(1616).and(BigInteger.valueOf(65535)).shortValue();
-      if(
-         (pps[rec_num_1Hz] < Constants.PPS_MIN) ||
-         (pps[rec_num_1Hz] > Constants.PPS_MAX)
-      ){
-         //make sure the value is not out of range because of an early pps
-         if(pps[rec_num_1Hz] != 65535){
-            pps[rec_num_1Hz] = Constants.PPS_FILL;
-            pps_q[rec_num_1Hz] |= Constants.OUT_OF_RANGE;
-         }
+      int field_i = layout.start(FrameLayout.PPS);
+      pps[rec_num_1Hz] = (short)raw[field_i];
+      if(raw_oor[field_i]){
+         pps_q[rec_num_1Hz] |= Constants.OUT_OF_RANGE;
       }
 
       //flag potentially bad gps and pps records
@@ -650,76 +762,18 @@ public class DataHolder{
       }
 
       //mag data 4 sets of xyz vectors. 24 bits/component
-      for(int i = 0; i < 4; i++){
-         magx[rec_num_4Hz + i] = 
-            frame.shiftRight(1592 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         magy[rec_num_4Hz + i] = 
-            frame.shiftRight(1568 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         magz[rec_num_4Hz] = 
-            frame.shiftRight(1544 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         magx[rec_num_4Hz + i] = 
-            frame.shiftRight(1592 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         magy[rec_num_4Hz + i] = 
-            frame.shiftRight(1568 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         magz[rec_num_4Hz + i] = 
-            frame.shiftRight(1544 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         magx[rec_num_4Hz + i] = 
-            frame.shiftRight(1592 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         magy[rec_num_4Hz + i] = 
-            frame.shiftRight(1568 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         magz[rec_num_4Hz + i] = 
-            frame.shiftRight(1544 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         magx[rec_num_4Hz + i] = 
-            frame.shiftRight(1592 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         magy[rec_num_4Hz + i] = 
-            frame.shiftRight(1568 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         magz[rec_num_4Hz + i] = 
-            frame.shiftRight(1544 - (72 * i)).
-            and(BigInteger.valueOf(16777215)).intValue();
-         
-         if(
-            (magx[rec_num_4Hz] < Constants.MAG_MIN) ||
-            (magx[rec_num_4Hz] > Constants.MAG_MAX)
-         ){
-            magx[rec_num_4Hz] = Constants.MAG_FILL;
-            magn_q[rec_num_4Hz] |= Constants.OUT_OF_RANGE;
-         }
-         if(
-            (magy[rec_num_4Hz] < Constants.MAG_MIN) ||
-            (magy[rec_num_4Hz] > Constants.MAG_MAX)
-         ){
-            magy[rec_num_4Hz] = Constants.MAG_FILL;
-            magn_q[rec_num_4Hz] |= Constants.OUT_OF_RANGE;
-         }
-         if(
-            (magz[rec_num_4Hz] < Constants.MAG_MIN) ||
-            (magz[rec_num_4Hz] > Constants.MAG_MAX)
-         ){
-            magz[rec_num_4Hz] = Constants.MAG_FILL;
-            magn_q[rec_num_4Hz] |= Constants.OUT_OF_RANGE;
-         }
-      }
+      copyField(layout, FrameLayout.MAGX, magx, rec_num_4Hz, magn_q);
+      copyField(layout, FrameLayout.MAGY, magy, rec_num_4Hz, magn_q);
+      copyField(layout, FrameLayout.MAGZ, magz, rec_num_4Hz, magn_q);
+      //Known issue: the first z sample of each frame is overwritten by the
+      //fourth, as it always has been. This is kept so the decoder does not
+      //change MAG_Z; see KNOWN_ISSUES.
+      magz[rec_num_4Hz] = magz[rec_num_4Hz + 3];
 
-      
       //mod40 housekeeping data: 16bits
-      hkpg[mod40][rec_num_mod40] = 
-         frame.shiftRight(1312).and(BigInteger.valueOf(65535)).longValue();
-      if(
-         (hkpg[mod40][rec_num_mod40] < Constants.HKPG_MIN) ||
-         (hkpg[mod40][rec_num_mod40] > Constants.HKPG_MAX)
-      ){
-         hkpg[mod40][rec_num_mod40] = Constants.HKPG_FILL;
+      field_i = layout.start(FrameLayout.HKPG);
+      hkpg[mod40][rec_num_mod40] = raw[field_i];
+      if(raw_oor[field_i]){
          hkpg_q[rec_num_mod40] |= Constants.OUT_OF_RANGE;
          CDF_Gen.log.writeln(mod40 + "");
       }
@@ -807,146 +861,39 @@ public class DataHolder{
             break;
       }
          
-      if(this.version > 3){
-         for(int lc_i = 0; lc_i < 20; lc_i++){
-            lc1[rec_num_20Hz + lc_i] =
-               frame.shiftRight(1303 - (48 * lc_i))
-                  .and(BigInteger.valueOf(511)).intValue();
-            lc2[rec_num_20Hz + lc_i] =
-               frame.shiftRight(1294 - (48 * lc_i))
-                  .and(BigInteger.valueOf(511)).intValue();
-            lc3[rec_num_20Hz + lc_i] =
-               frame.shiftRight(1286 - (48 * lc_i))
-                  .and(BigInteger.valueOf(255)).intValue();
-            lc4[rec_num_20Hz + lc_i] =
-               frame.shiftRight(1277 - (48 * lc_i))
-                  .and(BigInteger.valueOf(511)).intValue();
-            lc5[rec_num_20Hz + lc_i] =
-               frame.shiftRight(1270 - (48 * lc_i))
-                  .and(BigInteger.valueOf(127)).intValue();
-            lc6[rec_num_20Hz + lc_i] =
-               frame.shiftRight(1264 - (48 * lc_i))
-                  .and(BigInteger.valueOf(63)).intValue();
-
-            if(
-               (lc1[rec_num_20Hz] < Constants.FSPC_RAW_MIN) ||
-               (lc1[rec_num_20Hz] > Constants.FSPC_RAW_MAX)
-            ){
-               lc1[rec_num_20Hz] = Constants.FSPC_RAW_FILL;
-               fspc_q[rec_num_20Hz] |= Constants.OUT_OF_RANGE;
-            }
-            if(
-               (lc2[rec_num_20Hz] < Constants.FSPC_RAW_MIN) ||
-               (lc2[rec_num_20Hz] > Constants.FSPC_RAW_MAX)
-            ){
-               lc2[rec_num_20Hz] = Constants.FSPC_RAW_FILL;
-               fspc_q[rec_num_20Hz] |= Constants.OUT_OF_RANGE;
-            }
-            if(
-               (lc3[rec_num_20Hz] < Constants.FSPC_RAW_MIN) ||
-               (lc3[rec_num_20Hz] > Constants.FSPC_RAW_MAX)
-            ){
-               lc3[rec_num_20Hz] = Constants.FSPC_RAW_FILL;
-               fspc_q[rec_num_20Hz] |= Constants.OUT_OF_RANGE;
-            }
-            if(
-               (lc4[rec_num_20Hz] < Constants.FSPC_RAW_MIN) ||
-               (lc4[rec_num_20Hz] > Constants.FSPC_RAW_MAX)
-            ){
-               lc4[rec_num_20Hz] = Constants.FSPC_RAW_FILL;
-               fspc_q[rec_num_20Hz] |= Constants.OUT_OF_RANGE;
-            }
-            if(
-               (lc5[rec_num_20Hz] < Constants.FSPC_RAW_MIN) ||
-               (lc5[rec_num_20Hz] > Constants.FSPC_RAW_MAX)
-            ){
-               lc5[rec_num_20Hz] = Constants.FSPC_RAW_FILL;
-               fspc_q[rec_num_20Hz] |= Constants.OUT_OF_RANGE;
-            }
-            if(
-               (lc6[rec_num_20Hz] < Constants.FSPC_RAW_MIN) ||
-               (lc6[rec_num_20Hz] > Constants.FSPC_RAW_MAX)
-            ){
-               lc6[rec_num_20Hz] = Constants.FSPC_RAW_FILL;
-               fspc_q[rec_num_20Hz] |= Constants.OUT_OF_RANGE;
-            }
-         }
-      }else{
-         //old fast spectra: 20 sets of 4 channel data. 
-         //ch1 and ch2 are 16 bits, ch3 and ch4 are 8bits 
-         for(int lc_i = 0; lc_i < 20; lc_i++){
-            lc1[rec_num_20Hz + lc_i] =
-               frame.shiftRight(1296 - (48 * lc_i))
-                  .and(BigInteger.valueOf(65535)).intValue();
-            lc2[rec_num_20Hz + lc_i] =
-               frame.shiftRight(1280 - (48 * lc_i))
-                  .and(BigInteger.valueOf(65535)).intValue();
-            lc3[rec_num_20Hz + lc_i] =
-               frame.shiftRight(1272 - (48 * lc_i))
-                  .and(BigInteger.valueOf(255)).intValue();
-            lc4[rec_num_20Hz + lc_i] =
-               frame.shiftRight(1264 - (48 * lc_i))
-                  .and(BigInteger.valueOf(255)).intValue();
-
-            if(
-               (lc1[rec_num_20Hz] < Constants.FSPC_RAW_MIN) ||
-               (lc1[rec_num_20Hz] > Constants.FSPC_RAW_MAX)
-            ){
-               lc1[rec_num_20Hz] = Constants.FSPC_RAW_FILL;
-               fspc_q[rec_num_20Hz] |= Constants.OUT_OF_RANGE;
-            }
-            if(
-               (lc2[rec_num_20Hz] < Constants.FSPC_RAW_MIN) ||
-               (lc2[rec_num_20Hz] > Constants.FSPC_RAW_MAX)
-            ){
-               lc2[rec_num_20Hz] = Constants.FSPC_RAW_FILL;
-               fspc_q[rec_num_20Hz] |= Constants.OUT_OF_RANGE;
-            }
-            if(
-               (lc3[rec_num_20Hz] < Constants.FSPC_RAW_MIN) ||
-               (lc3[rec_num_20Hz] > Constants.FSPC_RAW_MAX)
-            ){
-               lc3[rec_num_20Hz] = Constants.FSPC_RAW_FILL;
-               fspc_q[rec_num_20Hz] |= Constants.OUT_OF_RANGE;
-            }
-            if(
-               (lc4[rec_num_20Hz] < Constants.FSPC_RAW_MIN) ||
-               (lc4[rec_num_20Hz] > Constants.FSPC_RAW_MAX)
-            ){
-               lc4[rec_num_20Hz] = Constants.FSPC_RAW_FILL;
-               fspc_q[rec_num_20Hz] |= Constants.OUT_OF_RANGE;
-            }
-         }
-      }
+      //fast spectra: 20 sets of up to 6 channels. Older versions of the
+      //DPU software do not send lc5 and lc6
+      copyField(layout, FrameLayout.LC1, lc1, rec_num_20Hz, fspc_q);
+      copyField(layout, FrameLayout.LC2, lc2, rec_num_20Hz, fspc_q);
+      copyField(layout, FrameLayout.LC3, lc3, rec_num_20Hz, fspc_q);
+      copyField(layout, FrameLayout.LC4, lc4, rec_num_20Hz, fspc_q);
+      copyField(layout, FrameLayout.LC5, lc5, rec_num_20Hz, fspc_q);
+      copyField(layout, FrameLayout.LC6, lc6, rec_num_20Hz, fspc_q);
        
-      //medium spectra: 12 channels per frame, 16 bits/channels
-      for(int mspc_i = 0, chan_i = 0; mspc_i < 12; mspc_i++){
-         chan_i = (mod4 * 12) + mspc_i;
-         mspc[rec_num_mod4][chan_i] =
-               frame.shiftRight(336 - (16 * mspc_i))
-                  .and(BigInteger.valueOf(65535)).intValue();
-         if(
-            (mspc[rec_num_mod4][chan_i] < Constants.MSPC_RAW_MIN) ||
-            (mspc[rec_num_mod4][chan_i] > Constants.MSPC_RAW_MAX)
-         ){
-            mspc[rec_num_mod4][chan_i] = Constants.MSPC_RAW_FILL;
+      //medium spectra: 12 channels per frame
+      field_i = layout.start(FrameLayout.MSPC);
+      for(
+         int mspc_i = 0, chan_i = mod4 * 12;
+         mspc_i < layout.count(FrameLayout.MSPC);
+         mspc_i++, chan_i++, field_i++
+      ){
+         mspc[rec_num_mod4][chan_i] = (int)raw[field_i];
+         if(raw_oor[field_i]){
             mspc_q[rec_num_mod4] |= Constants.OUT_OF_RANGE;
          }
       }
       //add to frame count
       mspc_frames++;
 
-      //slow spectra: 8 channels per frame, 16 bits/channels
-      for(int sspc_i = 0, chan_i = 0; sspc_i < 8; sspc_i++){
-         chan_i = (mod32 * 8) + sspc_i;
-         sspc[rec_num_mod32][chan_i] =
-               frame.shiftRight(144 - (16 * sspc_i))
-                  .and(BigInteger.valueOf(65535)).intValue();
-         if(
-            (sspc[rec_num_mod32][chan_i] < Constants.SSPC_RAW_MIN) ||
-            (sspc[rec_num_mod32][chan_i] > Constants.SSPC_RAW_MAX)
-         ){
-            sspc[rec_num_mod32][chan_i] = Constants.SSPC_RAW_FILL;
+      //slow spectra: 8 channels per frame
+      field_i = layout.start(FrameLayout.SSPC);
+      for(
+         int sspc_i = 0, chan_i = mod32 * 8;
+         sspc_i < layout.count(FrameLayout.SSPC);
+         sspc_i++, chan_i++, field_i++
+      ){
+         sspc[rec_num_mod32][chan_i] = (int)raw[field_i];
+         if(raw_oor[field_i]){
             sspc_q[rec_num_mod32] |= Constants.OUT_OF_RANGE;
          }
       }
@@ -954,14 +901,32 @@ public class DataHolder{
       sspc_frames++;
       
       //rate counter: mod4 data, 16bits
-      rcnt[mod4][rec_num_mod4] = 
-         frame.shiftRight(16).and(BigInteger.valueOf(65535)).longValue();
-      if(
-         (rcnt[mod4][rec_num_mod4] < Constants.RCNT_MIN) ||
-         (rcnt[mod4][rec_num_mod4] > Constants.RCNT_MAX)
-      ){
-         rcnt[mod4][rec_num_mod4] = Constants.RCNT_FILL;
+      field_i = layout.start(FrameLayout.RCNT);
+      rcnt[mod4][rec_num_mod4] = raw[field_i];
+      if(raw_oor[field_i]){
          rcnt_q[rec_num_mod4] |= Constants.OUT_OF_RANGE;
       }
+
+      //let the timing models catch up when a new mod4 group starts
+      if(timing != null && rec_num_mod4 != timed_mod4){
+         timed_mod4 = rec_num_mod4;
+         timing.update();
+      }
+
+      return FrameIndex.ADDED | (gps_ok ? FrameIndex.GPS_VALID : 0);
+   }
+
+   //copies each repeat of a decoded field into consecutive records
+   private void copyField(
+      final FrameLayout layout, final int field, int[] dest, final int rec_i,
+      int[] quality
+   ){
+      int field_i = layout.start(field);
+      for(int rep_i = 0; rep_i < layout.count(field); rep_i++, field_i++){
+         dest[rec_i + rep_i] = (int)raw[field_i];
+         if(raw_oor[field_i]){
+            quality[rec_i + rep_i] |= Constants.OUT_OF_RANGE;
+         }
+      }
    }
 }
@@ -0,0 +1,88 @@
+/*
+DuplicateFilter.java
+
+Description:
+   Remembers which frames have been seen so a frame that arrives through more
+   than one ground server is only processed once. Frames are identified by
+   their frame counter, and by their checksum word when two frames share a
+   frame counter.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+import java.util.BitSet;
+
+public class DuplicateFilter{
+   //one bit for every possible frame counter value
+   private BitSet counters = new BitSet(1 << FrameLayout.FRAME_COUNTER.width);
+
+   //Open addressed hash set of (frame counter, checksum) pairs. Pairs are
+   //stored plus one so that 0 can mark an empty slot.
+   private long[] keys = new long[1 << 17];
+   private int size = 0;
+
+   //Returns true the first time a frame is seen, false for any repeats.
+   public boolean add(final FrameView frame){
+      int
+         fc = (int)frame.bits(
+            FrameLayout.FRAME_COUNTER.offset, FrameLayout.FRAME_COUNTER.width
+         ),
+         checksum = (int)frame.bits(0, 16);
+      long key = (((long)fc << 16) | checksum) + 1;
+
+      //most frames have a counter that has not been seen before
+      if(!counters.get(fc)){
+         counters.set(fc);
+         insert(key);
+         return true;
+      }
+
+      return insert(key);
+   }
+
+   //adds a key to the set, returns false if it was already there
+   private boolean insert(final long key){
+      if((size + 1) * 2 > keys.length){rehash(keys.length * 2);}
+
+      int mask = keys.length - 1;
+      for(int slot = hash(key) & mask; ; slot = (slot + 1) & mask){
+         if(keys[slot] == key){return false;}
+         if(keys[slot] == 0){
+            keys[slot] = key;
+            size++;
+            return true;
+         }
+      }
+   }
+
+   private void rehash(final int capacity){
+      long[] old = keys;
+      keys = new long[capacity];
+      size = 0;
+      for(long key : old){
+         if(key != 0){insert(key);}
+      }
+   }
+
+   private static int hash(final long key){
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int)(h ^ (h >>> 32));
+   }
+}
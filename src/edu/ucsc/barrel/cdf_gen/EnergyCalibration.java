@@ -0,0 +1,121 @@
+/*
+EnergyCalibration.java
+
+Description:
+   Holds the DPU temperature coefficients listed in energy.cal for each
+   payload. The file is read the first time it is needed and the table is
+   never changed after that.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class EnergyCalibration{
+   //coefficients used when a payload is listed without a full set of values
+   private static final float[][] DEFAULT_COEFFS =
+      {{-5f, -0.1f}, {-0.5f, -0.001f}, {-0.1f, 0.0001f}};
+
+   private static EnergyCalibration table;
+
+   //payloads listed in the file, and the coefficients for each of them
+   private final Map<String, float[][]> coeffs;
+
+   private EnergyCalibration(final Map<String, float[][]> coeffs){
+      this.coeffs = Collections.unmodifiableMap(coeffs);
+   }
+
+   //returns the calibration table, reading energy.cal on the first call
+   public static synchronized EnergyCalibration get(){
+      if(table == null){
+         table = load(new File("energy.cal"));
+      }
+      return table;
+   }
+
+   private static EnergyCalibration load(final File energy_cal){
+      Map<String, float[][]> coeffs = new HashMap<String, float[][]>();
+
+      try{
+         FileReader fr = new FileReader(energy_cal);
+         BufferedReader br = new BufferedReader(fr);
+
+         String line;
+         String[] line_parts;
+
+         while((line = br.readLine()) != null){
+            //split off comments
+            line_parts = line.split(";");
+
+            //split the payload ID from the rest
+            line_parts = line_parts[0].split(":");
+            if(line_parts.length < 2){continue;}
+
+            //only the first full set of values for a payload is used
+            String payload = line_parts[0].trim();
+            if(
+               coeffs.containsKey(payload) &&
+               coeffs.get(payload) != DEFAULT_COEFFS
+            ){
+               continue;
+            }
+            coeffs.put(payload, DEFAULT_COEFFS);
+
+            //check for the right number of values
+            line_parts = line_parts[1].trim().split(",");
+            if(line_parts.length != 6){continue;}
+
+            //the correct number of values were in the file
+            //overwrite defaults
+            coeffs.put(payload, new float[][] {
+               {Float.valueOf(line_parts[0]), Float.valueOf(line_parts[1])},
+               {Float.valueOf(line_parts[2]), Float.valueOf(line_parts[3])},
+               {Float.valueOf(line_parts[4]), Float.valueOf(line_parts[5])}
+            });
+         }
+
+         br.close();
+      }catch(IOException ex){
+         System.out.println("Can not find energy calibration file.");
+         System.out.println("Using default values.");
+      }
+
+      return new EnergyCalibration(coeffs);
+   }
+
+   public boolean hasPayload(final String payload){
+      return coeffs.containsKey(payload);
+   }
+
+   //Returns a copy of the {{A1, A2}, {B1, B2}, {C1, C2}} coefficients for a
+   //payload, or null if the payload is not listed in the file.
+   public float[][] getCoeffs(final String payload){
+      float[][] c = coeffs.get(payload);
+      if(c == null){return null;}
+
+      return new float[][] {c[0].clone(), c[1].clone(), c[2].clone()};
+   }
+}
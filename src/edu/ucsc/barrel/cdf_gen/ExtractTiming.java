@@ -1,9 +1,14 @@
 /*
-ExactTiming.java
+ExtractTiming.java
 
 Description:
    Uses a block of gps time info to create a more exact time variable.
    Ported from MPM's C code.
+   Time pairs are collected and models are fit while the frames are still 
+   being decoded: the DataHolder calls update() each time a mod4 group is
+   finished, and each block of MAX_RECS time pairs is fit as soon as it is
+   full. The rest of the day is handled when the level zero stage is done.
+   Models are saved in a TimingCache so later runs can reuse them.
 
    ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
    This file is part of The BARREL CDF Generator.
@@ -26,7 +31,9 @@ Description:
 package edu.ucsc.barrel.cdf_gen;
 
 import org.apache.commons.math3.stat.regression.SimpleRegression;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public class ExtractTiming {
    //Set some constant values
@@ -50,245 +57,396 @@ public class ExtractTiming {
    private static final long MSPC_EPOCH_OFFSET = 2000000000L; //3996000000L;
 
 
-   private class TimeRec{
-      private long ms;//frame timestamp
-      private long frame;//frame counter
+   //time pairs: the frame counter of each GPS time frame and its timestamp
+   private long[] rec_frame, rec_ms;
+   private int time_rec_cnt = 0;
 
-      public TimeRec(long fc, long msw, short weeks, short pps){
-         //figure out if we need to add an extra second based on the PPS
-         int extra_ms = (pps < 241) ? 0 : 1000;
+   //first time pair of the block that has not been fit yet
+   private int block_start = 0;
 
-         //get the number of ms between GPS_START_TIME and start of this week
-         long weeks_in_ms = weeks * MSPERWEEK;
+   //mod4 records that have had their week fixed and been turned into time
+   //pairs, and the first week and ms_of_week values seen
+   private int fixed_recs = 0, timed_recs = 0;
+   private int initial_week = 0, initial_ms = 0;
 
-         //save the frame number
-         frame = fc;
+   //linear models: the frames each model covers and the model itself
+   private long[] model_first, model_last;
+   private double[] model_slope, model_intercept;
+   private int model_cnt = 0;
 
-         //calculate the number of milliseconds since J2000 
-         ms = weeks_in_ms + msw + extra_ms - pps + GPS_EPOCH;
-      }
+   //true when each model ends after the one before it
+   private boolean models_sorted = true;
+
+   //holder for external data set
+   private DataHolder data;
+
+   //models saved by earlier runs, and the ones made by this run
+   private String date;
+   private TimingCache cache;
+   private List<TimingCache.Model> made = new ArrayList<TimingCache.Model>();
+   
+   public ExtractTiming(DataHolder data, String d){
+      //save DataHolder storage object
+      this.data = data;
+      this.date = d;
+      this.cache = TimingCache.load(data.getPayload());
       
-      public long getMS(){return ms;}
-      public long getFrame(){return frame;}
+      int 
+         recs = Math.max(data.getSize(Cadence.MOD4), MAX_RECS),
+         models = (data.getSize(Cadence.ONE_HZ) / MAX_RECS) + 1;
+
+      rec_frame = new long[recs];
+      rec_ms = new long[recs];
+      model_first = new long[models];
+      model_last = new long[models];
+      model_slope = new double[models];
+      model_intercept = new double[models];
    }
-   
-   private class LinModel{
-      private long first_frame, last_frame;
-      private double slope, intercept;
-
-      public void setFirst(long fc){first_frame = fc;}
-      public void setLast(long fc){last_frame = fc;}
-      public void setSlope(double s){slope = s;}
-      public void setIntercept(double i){intercept = i;}
-
-      public long getFirst(){return first_frame;}
-      public long getLast(){return last_frame;}
-      public double getSlope(){return slope;}
-      public double getIntercept(){return intercept;}
+
+   //Fixes the week offset and makes time pairs for each mod4 record that 
+   //is complete and will not change as more frames are added. Stops at the
+   //first record that is not ready yet. If the frames are arriving out of
+   //order nothing is done until the whole day is loaded.
+   public void update(){
+      if(!data.framesSorted()){return;}
+
+      //the last record of each cadence can still be added to
+      int 
+         done_mod4 = data.getSize(Cadence.MOD4) - 1,
+         done_mod40 = data.getSize(Cadence.MOD40) - 1;
+
+      while(timed_recs < done_mod4){
+         if(timed_recs / 10 >= done_mod40){return;}
+
+         if(fixed_recs == timed_recs){
+            fixWeekOffset(fixed_recs);
+            fixed_recs++;
+         }
+
+         if(!timeRecReady(timed_recs)){return;}
+         addTimeRec(timed_recs);
+         timed_recs++;
+      }
    }
 
-   //declare an array of time pairs
-   private TimeRec[] time_recs;
-   private int time_rec_cnt = 0;
+   //Checks that the records a time pair is built from are already in the
+   //DataHolder, so looking them up now gives the same answer as at the end
+   //of the day.
+   private boolean timeRecReady(final int rec_mod4_i){
+      long ms = data.ms_of_week[rec_mod4_i];
+      long fc = data.frame_mod4[rec_mod4_i];
+      if((ms < MINMS) || (ms > MAXMS) || (fc == Constants.FC_FILL)){
+         return true;
+      }
+      fc = fc - (fc % 4) + Constants.TIME_I; 
 
-   //declare array of linear models
-   private LinModel[] models;
-   private int model_cnt = 0;
+      int rec_1Hz_i = data.convertIndex(fc, Cadence.ONE_HZ);
+      int rec_mod40_i = data.convertIndex(fc, Cadence.MOD40);
 
-   //holder for external data set
-   private DataHolder data;
-   
-   public ExtractTiming(String d){
-      //get DataHolder storage object
-      data = CDF_Gen.data;
-      
-      int temp, day, fc, week, ms, pps, cnt, mod40;
-      int rec_i = 0, frame_i = 0;
-      
-      time_recs = new TimeRec[data.getSize("mod4")];
-      models = new LinModel[(data.getSize("1Hz") / MAX_RECS) + 1];
+      return
+         data.frame_1Hz[rec_1Hz_i] >= Cadence.ONE_HZ.groupStart(fc) &&
+         data.frame_mod40[rec_mod40_i] >= Cadence.MOD40.groupStart(fc) &&
+         rec_mod40_i < data.getSize(Cadence.MOD40) - 1;
+   }
+
+   //number of milliseconds since J2000 for a GPS time and PPS value
+   private static long timeMs(long msw, short weeks, short pps){
+      //figure out if we need to add an extra second based on the PPS
+      int extra_ms = (pps < 241) ? 0 : 1000;
+
+      //get the number of ms between GPS_START_TIME and start of this week
+      long weeks_in_ms = weeks * MSPERWEEK;
+
+      return weeks_in_ms + msw + extra_ms - pps + GPS_EPOCH;
    }
 
+   //makes time pairs from any mod4 records update() has not reached
    public void getTimeRecs(){
-      int fc_offset, rec_mod40_i, rec_1Hz_i;
+      for(; timed_recs < data.getSize(Cadence.MOD4); timed_recs++){
+         addTimeRec(timed_recs);
+      }
+   }
+
+   //turns one mod4 record into a time pair if it has good time values
+   private void addTimeRec(final int rec_mod4_i){
+      int rec_mod40_i, rec_1Hz_i;
       short week, pps;
       long ms, fc;
 
-      //cycle through the entire data set and create an array of time records
-      for(int rec_mod4_i = 0; rec_mod4_i < time_recs.length; rec_mod4_i++){
-         //make sure we have a valid ms
-         ms = data.ms_of_week[rec_mod4_i];
-         if((ms < MINMS) || (ms > MAXMS)){continue;}
-
-         //get initial fc from the mod4 framegroup
-         fc = data.frame_mod4[rec_mod4_i]; //last good fc from this mod4 group
-         
-         //check if fc is a fill value
-         if(fc == Constants.FC_FILL){continue;}
-
-         //Offset the frame number to be that of the GPS_Time frame
-         fc = fc - (fc % 4) + Constants.TIME_I; 
-
-         //get the indices of other cadence data
-         rec_1Hz_i = data.convertIndex(rec_mod4_i, fc, "mod4", "1Hz");
-         rec_mod40_i = data.convertIndex(rec_mod4_i, fc, "mod4", "mod40");
-
-         //figure out if pps is valid 
-         pps = (short)data.pps[rec_1Hz_i];
-         if((pps < MINPPS) || (pps > MAXPPS)){
-            //check if pps is high because it came super early so the
-            //dpu didnt have a chance to write "0"
-            if(pps == 65535 || pps == 32768){pps = 0;} 
-            else{continue;}
-         }
+      //make sure we have a valid ms
+      ms = data.ms_of_week[rec_mod4_i];
+      if((ms < MINMS) || (ms > MAXMS)){return;}
 
-         //get number of weeks since GPS_START_TIME
-         week = (short)data.weeks[rec_mod40_i];
-         if((week < MINWK) || (week > MAXWK)){continue;}
-         time_recs[time_rec_cnt] = new TimeRec(fc, ms, week, pps);
-         time_rec_cnt++;
+      //get initial fc from the mod4 framegroup
+      fc = data.frame_mod4[rec_mod4_i]; //last good fc from this mod4 group
+      
+      //check if fc is a fill value
+      if(fc == Constants.FC_FILL){return;}
+
+      //Offset the frame number to be that of the GPS_Time frame
+      fc = fc - (fc % 4) + Constants.TIME_I; 
+
+      //get the indices of other cadence data
+      rec_1Hz_i = data.convertIndex(fc, Cadence.ONE_HZ);
+      rec_mod40_i = data.convertIndex(fc, Cadence.MOD40);
+
+      //figure out if pps is valid 
+      pps = (short)data.pps[rec_1Hz_i];
+      if((pps < MINPPS) || (pps > MAXPPS)){
+         //check if pps is high because it came super early so the
+         //dpu didnt have a chance to write "0"
+         if(pps == 65535 || pps == 32768){pps = 0;} 
+         else{return;}
+      }
+
+      //get number of weeks since GPS_START_TIME
+      week = (short)data.weeks[rec_mod40_i];
+      if((week < MINWK) || (week > MAXWK)){return;}
+
+      if(time_rec_cnt == rec_frame.length){
+         rec_frame = Arrays.copyOf(rec_frame, time_rec_cnt * 2);
+         rec_ms = Arrays.copyOf(rec_ms, time_rec_cnt * 2);
+      }
+      rec_frame[time_rec_cnt] = fc;
+      rec_ms[time_rec_cnt] = timeMs(ms, week, pps);
+      time_rec_cnt++;
+
+      //fit the block as soon as it is full
+      if(time_rec_cnt - block_start == MAX_RECS){
+         fitBlock(block_start, time_rec_cnt);
+         block_start = time_rec_cnt;
       }
    }
    
+   //fits the last, partly filled, block and makes sure there is a model
    public void fillModels(){
-      int last_rec = 0, frame_i = 0, size_1Hz;
-      long last_frame;
-      SimpleRegression fit = null, new_fit = null;
-      
-      size_1Hz = data.getSize("1Hz");
-      //create a model for each batch of time records
-      for(int first_rec = 0; first_rec < time_rec_cnt; first_rec = last_rec){
-         //incriment the last_rec by the max, or however many recs are left
-         last_rec += Math.min(MAX_RECS, (time_rec_cnt - first_rec));
-         
-         //try to generate a model
-         new_fit = genModel(first_rec, last_rec);
-
-         //Need to add better criteria than this for accepting a new model
-         if(new_fit != null){
-            fit = new_fit;
-
-            models[model_cnt] = new LinModel();
-            models[model_cnt].setSlope(fit.getSlope()); 
-            models[model_cnt].setIntercept(fit.getIntercept()); 
-            models[model_cnt].setFirst(time_recs[first_rec].getFrame()); 
-            models[model_cnt].setLast(time_recs[last_rec - 1].getFrame()); 
-            model_cnt++;
+      int size_1Hz = data.getSize(Cadence.ONE_HZ);
 
+      if(block_start < time_rec_cnt){
+         fitBlock(block_start, time_rec_cnt);
+         block_start = time_rec_cnt;
+      }
+
+      if(model_cnt == 0){
+         //No timing model was created. If another day has a model that
+         //covers or runs right up to these frames, it is as good as a model
+         //made from this day's own time pairs. Models further away are not
+         //used so they can't pass off a guess as a real timestamp.
+         long first_fc = Long.MAX_VALUE, last_fc = Long.MIN_VALUE;
+         for(int rec_i = 0; rec_i < size_1Hz; rec_i++){
+            if(data.frame_1Hz[rec_i] == Constants.FC_FILL){continue;}
+            first_fc = Math.min(first_fc, data.frame_1Hz[rec_i]);
+            last_fc = Math.max(last_fc, data.frame_1Hz[rec_i]);
+         }
+
+         TimingCache.Model saved = cache.adjoining(date, first_fc, last_fc);
+         if(saved != null){
             System.out.println(
-               "Frames " + time_recs[first_rec].getFrame() + " - " +
-               time_recs[last_rec - 1].getFrame()); 
-            System.out.println(
-               "\tm = " + fit.getSlope() + ", b = " + fit.getIntercept() + 
-               " slope error = " + fit.getSlopeStdErr() + " n = " + fit.getN()
+               "Using the timing model for frames " + saved.first + 
+               " - " + saved.last + " from " + saved.date
             );
-         }else{
-            System.out.println(
-               "Failed to get model using " + (last_rec-first_rec) + " records."
+            addModel(
+               saved.slope, saved.intercept, 0, data.frame_1Hz[size_1Hz]
             );
          }
       }
 
-      if(fit == null){
+      if(model_cnt == 0){
          //no timing model was ever created. 
          //Use slope=1000 and intercept=0 to use frame number epoch.
          //this will clearly not give a good result for time, but will
          //allow the data to be plotted as a time series.
          //This will be a place to add a quality flag
-         models[model_cnt] = new LinModel();
-         models[model_cnt].setSlope(1000); 
-         models[model_cnt].setIntercept(0); 
-         models[model_cnt].setFirst(0); 
-         models[model_cnt].setLast(data.frame_1Hz[size_1Hz]); 
-         model_cnt = 1;
+         addModel(1000, 0, 0, data.frame_1Hz[size_1Hz]);
       }
-   }
 
-   public void fillEpoch(){
-      long fc; 
-      int date_offset, size;
-      double m, b;
-      
-      //fill the 1Hz and faster timestamps
-      size = data.getSize("1Hz");
-      for(int data_i = 0, model_i = 0; data_i < size; data_i++){
-         fc = data.frame_1Hz[data_i];
-
-         //verify we have the correct model selected
-         model_i = selectModel(fc, model_i);
-
-         //save the model used for this frame
-         data.time_model_intercept[data_i] = 
-            models[model_i].getIntercept();
-         data.time_model_slope[data_i] = 
-            models[model_i].getSlope();
-
-         //calculate epoch in ns
-         data.epoch_1Hz[data_i] = (long)(
-            ((fc * data.time_model_slope[data_i]) + 
-            data.time_model_intercept[data_i]) * 1000000
-         );
-
-         /*
-         //offset epoch to the begining of the accumulation period
-         data.epoch_1Hz[data_i] -= Constants.SING_ACCUM;
-         */
+      cache.save(date, made, lastWeek());
+   }
 
-         //save epoch to the various time scales
-         //fill the >1Hz times 
-         for(int fill_i = 0; fill_i < 4; fill_i++){
-            data.epoch_4Hz[(data_i * 4) + fill_i] = 
-               data.epoch_1Hz[data_i] + (fill_i * 250000000);
-         }
-         for(int fill_i = 0; fill_i < 20; fill_i++){
-            data.epoch_20Hz[(data_i * 20) + fill_i] = 
-               data.epoch_1Hz[data_i] + (fill_i * 50000000);
+   //the last good week number in the data set, or 0 if there is none
+   private int lastWeek(){
+      for(int rec_i = data.getSize(Cadence.MOD40) - 1; rec_i >= 0; rec_i--){
+         if(data.weeks[rec_i] >= MINWK && data.weeks[rec_i] <= MAXWK){
+            return data.weeks[rec_i];
          }
       }
+      return 0;
+   }
 
-      //fill mod4 timestamps
-      size = data.getSize("mod4");
-      for(int data_i = 0, model_i = 0; data_i < size; data_i++){
-         fc = data.frame_mod4[data_i];
-         model_i = selectModel(fc, model_i);
-         data.epoch_mod4[data_i] = (long)(
-            ((fc * models[model_i].getSlope()) + 
-            models[model_i].getIntercept()) * 1000000
+   //creates a model from a block of time pairs
+   private void fitBlock(final int first_rec, final int last_rec){
+      long 
+         first = rec_frame[first_rec],
+         last = rec_frame[last_rec - 1],
+         key = TimingCache.key(rec_frame, rec_ms, first_rec, last_rec);
+      int count = last_rec - first_rec;
+
+      //an earlier run already fit these exact time pairs
+      TimingCache.Model saved = cache.find(first, last, count, key);
+      if(saved != null){
+         addModel(saved.slope, saved.intercept, first, last);
+         made.add(new TimingCache.Model(
+            date, first, last, count, key, saved.slope, saved.intercept
+         ));
+
+         System.out.println("Frames " + first + " - " + last); 
+         System.out.println(
+            "\tm = " + saved.slope + ", b = " + saved.intercept + 
+            " (saved from " + saved.date + ")"
          );
-
-         data.epoch_mod4[data_i] -= MSPC_EPOCH_OFFSET;
+         return;
       }
 
-      //fill mod32 timestamps
-      size = data.getSize("mod32");
-      for(int data_i = 0, model_i = 0; data_i < size; data_i++){
-         fc = data.frame_mod32[data_i];
-         model_i = selectModel(fc, model_i);
-         data.epoch_mod32[data_i] = (long)(
-            ((fc * models[model_i].getSlope()) + 
-            models[model_i].getIntercept()) * 1000000
+      //try to generate a model
+      SimpleRegression fit = genModel(first_rec, last_rec);
+
+      //Need to add better criteria than this for accepting a new model
+      if(fit != null){
+         addModel(fit.getSlope(), fit.getIntercept(), first, last);
+         made.add(new TimingCache.Model(
+            date, first, last, count, key, 
+            fit.getSlope(), fit.getIntercept()
+         ));
+
+         System.out.println(
+            "Frames " + rec_frame[first_rec] + " - " +
+            rec_frame[last_rec - 1]); 
+         System.out.println(
+            "\tm = " + fit.getSlope() + ", b = " + fit.getIntercept() + 
+            " slope error = " + fit.getSlopeStdErr() + " n = " + fit.getN()
+         );
+      }else{
+         System.out.println(
+            "Failed to get model using " + (last_rec-first_rec) + " records."
          );
+      }
+   }
 
-         data.epoch_mod32[data_i] -= SSPC_EPOCH_OFFSET;
+   private void addModel(
+      final double slope, final double intercept, 
+      final long first, final long last
+   ){
+      if(model_cnt > 0 && last < model_last[model_cnt - 1]){
+         models_sorted = false;
+      }
+      if(model_cnt == model_last.length){
+         model_first = Arrays.copyOf(model_first, model_cnt * 2);
+         model_last = Arrays.copyOf(model_last, model_cnt * 2);
+         model_slope = Arrays.copyOf(model_slope, model_cnt * 2);
+         model_intercept = Arrays.copyOf(model_intercept, model_cnt * 2);
       }
 
-      //fill mod40 timestamps
-      size = data.getSize("mod40");
-      for(int data_i = 0, model_i = 0; data_i < size; data_i++){
-         fc = data.frame_mod40[data_i];
-         model_i = selectModel(fc, model_i);
-         data.epoch_mod40[data_i] = (long)(
-            ((fc * models[model_i].getSlope()) + 
-            models[model_i].getIntercept()) * 1000000
-         );
-        
-         /*
-         //offset the epoch to the accumulation time of the first frame
-         data.epoch_mod40[data_i] -= (((fc % 40) + 1) * Constants.SING_ACCUM);
-         */
+      model_slope[model_cnt] = slope;
+      model_intercept[model_cnt] = intercept;
+      model_first[model_cnt] = first;
+      model_last[model_cnt] = last;
+      model_cnt++;
+   }
+
+   //Fills the epoch of every cadence in one pass over the 1Hz records. The
+   //slower cadences are filled as the 1Hz frames reach them, reusing the 1Hz
+   //epoch when a group starts on that frame. Each cadence keeps its own place
+   //in the list of models. The 4Hz and 20Hz epochs are not stored, see
+   //DataHolder.getEpoch().
+   public void fillEpoch(){
+      long fc, fc_epoch = 0; 
+      int 
+         size = data.getSize(Cadence.ONE_HZ),
+         size_mod4 = data.getSize(Cadence.MOD4),
+         size_mod32 = data.getSize(Cadence.MOD32),
+         size_mod40 = data.getSize(Cadence.MOD40),
+         mod4_i = 0, mod32_i = 0, mod40_i = 0,
+         model_i = 0, model_mod4 = 0, model_mod32 = 0, model_mod40 = 0;
+      
+      for(int data_i = 0; data_i <= size; data_i++){
+         if(data_i < size){
+            //fill the 1Hz and faster timestamps
+            fc = data.frame_1Hz[data_i];
+
+            //verify we have the correct model selected
+            model_i = selectModel(fc, model_i);
+
+            //save the model used for this frame
+            data.time_model_intercept[data_i] = model_intercept[model_i];
+            data.time_model_slope[data_i] = model_slope[model_i];
+
+            //calculate epoch in ns
+            fc_epoch = epoch(fc, model_i);
+            data.epoch_1Hz[data_i] = fc_epoch;
+
+            /*
+            //offset epoch to the begining of the accumulation period
+            data.epoch_1Hz[data_i] -= Constants.SING_ACCUM;
+            */
+         }else{
+            //past the last frame, finish off the slower cadences
+            fc = Long.MAX_VALUE;
+         }
+
+         //fill mod4 timestamps
+         for(
+            ; 
+            mod4_i < size_mod4 && data.frame_mod4[mod4_i] <= fc; 
+            mod4_i++
+         ){
+            model_mod4 = selectModel(data.frame_mod4[mod4_i], model_mod4);
+            data.epoch_mod4[mod4_i] = 
+               groupEpoch(
+                  data.frame_mod4[mod4_i], model_mod4, fc, model_i, fc_epoch
+               ) - MSPC_EPOCH_OFFSET;
+         }
+
+         //fill mod32 timestamps
+         for(
+            ; 
+            mod32_i < size_mod32 && data.frame_mod32[mod32_i] <= fc; 
+            mod32_i++
+         ){
+            model_mod32 = selectModel(data.frame_mod32[mod32_i], model_mod32);
+            data.epoch_mod32[mod32_i] = 
+               groupEpoch(
+                  data.frame_mod32[mod32_i], model_mod32, fc, model_i, fc_epoch
+               ) - SSPC_EPOCH_OFFSET;
+         }
+
+         //fill mod40 timestamps
+         for(
+            ; 
+            mod40_i < size_mod40 && data.frame_mod40[mod40_i] <= fc; 
+            mod40_i++
+         ){
+            model_mod40 = selectModel(data.frame_mod40[mod40_i], model_mod40);
+            data.epoch_mod40[mod40_i] = 
+               groupEpoch(
+                  data.frame_mod40[mod40_i], model_mod40, fc, model_i, fc_epoch
+               );
+           
+            /*
+            //offset the epoch to the accumulation time of the first frame
+            data.epoch_mod40[mod40_i] -= 
+               (((fc % 40) + 1) * Constants.SING_ACCUM);
+            */
+         }
       }
    }
 
+   //epoch in ns of a frame using the given model
+   private long epoch(final long fc, final int model_i){
+      return (long)(
+         ((fc * model_slope[model_i]) + model_intercept[model_i]) * 1000000
+      );
+   }
+
+   //epoch of a group's first frame, taken from the current 1Hz frame when
+   //it is the same frame and model
+   private long groupEpoch(
+      final long group_fc, final int group_model, 
+      final long fc, final int model_i, final long fc_epoch
+   ){
+      if(group_fc == fc && group_model == model_i){return fc_epoch;}
+      return epoch(group_fc, group_model);
+   }
+
    public void fixWeekOffset(){
       /*
       Because the each "day" of data most likely contains some portion of a 
@@ -299,38 +457,51 @@ public class ExtractTiming {
       rolls over.
       */
       
-      int initial_week = 0, initial_ms = 0;
-      
-      //start looking for rollover
-      for(int ms_i = 0; ms_i < data.getSize("mod4"); ms_i++){
-         //try to find and initial set of 
-         //timestamps and week variables if needed.
-         if(initial_week == 0){initial_week = data.weeks[ms_i / 10];}
-         if(initial_ms == 0){initial_ms = data.ms_of_week[ms_i];}
-
-         //check to see if the ms_of_week rolled over
-         //the value given by the gps might jump around a bit, so make sure 
-         //the roll back is significant (>1min)
-         if((data.ms_of_week[ms_i] - initial_ms) < -60000){
-            //check if the week variable was updated
-            if(data.weeks[ms_i/10] != 0 && data.weeks[ms_i/10] == initial_week){
-               //the week variable has not yet updated,
-               // add 1 week of ms to the ms_of_week variable
-               data.ms_of_week[ms_i] += 604800000;
-            }
+      //start looking for rollover in any records update() has not reached
+      for(; fixed_recs < data.getSize(Cadence.MOD4); fixed_recs++){
+         fixWeekOffset(fixed_recs);
+      }
+   }
+
+   private void fixWeekOffset(final int ms_i){
+      //try to find and initial set of 
+      //timestamps and week variables if needed.
+      if(initial_week == 0){
+         initial_week = data.weeks[ms_i / 10];
+
+         //a day that starts without a good week uses the day before's
+         if(
+            initial_week == Constants.WEEKS_FILL && cache.getWeek(date) != 0
+         ){
+            initial_week = cache.getWeek(date);
+         }
+      }
+      if(initial_ms == 0){initial_ms = data.ms_of_week[ms_i];}
+
+      //check to see if the ms_of_week rolled over
+      //the value given by the gps might jump around a bit, so make sure 
+      //the roll back is significant (>1min)
+      if((data.ms_of_week[ms_i] - initial_ms) < -60000){
+         //check if the week variable was updated
+         if(data.weeks[ms_i/10] != 0 && data.weeks[ms_i/10] == initial_week){
+            //the week variable has not yet updated,
+            // add 1 week of ms to the ms_of_week variable
+            data.ms_of_week[ms_i] += 604800000;
          }
       }
-      
    }
    
    private int selectModel(final long fc, final int i){
       int model_i = i;
       //select a model for this frame
-      if(fc > models[model_i].getLast()){
-         //frame came after the last valid fc for the current model
-         for(int new_i = 0; new_i < model_cnt; new_i++){
+      if(fc > model_last[model_i]){
+         //frame came after the last valid fc for the current model.
+         //When the models are in order none of the earlier ones can hold 
+         //this frame, so the search can carry on from the current model
+         int new_i = models_sorted ? model_i + 1 : 0;
+         for(; new_i < model_cnt; new_i++){
             //loop through the remaining models
-            if(fc <= models[new_i].getLast()){
+            if(fc <= model_last[new_i]){
                //stop looping when we find a model that has a 
                //fc range containing this frame
                model_i = new_i;
@@ -355,9 +526,7 @@ public class ExtractTiming {
       //"offsets" are the difference between the nominal time guess and
       //the time that was transmitted
       for(int rec_i = first, offset_i = 0; rec_i < last; rec_i++, offset_i++){
-         offsets[offset_i] = 
-            time_recs[rec_i].getMS() - 
-            (NOM_RATE * time_recs[rec_i].getFrame());
+         offsets[offset_i] = rec_ms[rec_i] - (NOM_RATE * rec_frame[rec_i]);
       }
       
       //find the median offset value
@@ -367,24 +536,41 @@ public class ExtractTiming {
       //and add them to the model
       for (int rec_i = first, offset_i = 0; rec_i < last; rec_i++, offset_i++){
          if(Math.abs(offsets[offset_i] - med) < 200){
-            fit.addData(time_recs[rec_i].getFrame(), time_recs[rec_i].getMS());
+            fit.addData(rec_frame[rec_i], rec_ms[rec_i]);
          }
       }
       return fit;
    }
    
+   //Returns the same element the old sort based median did (the one just 
+   //above the middle), found with a quickselect on a copy of the list.
    private double median(double[] list){
-      double[] sortedList = new double[list.length];
-      
-      //copy the input list and sort it
-      System.arraycopy(list, 0, sortedList, 0, list.length);
-      
-      Arrays.sort(sortedList);
-      
-      if(list.length > 2){
-         return sortedList[(int) (sortedList.length / 2) + 1];
-      }else{
-         return sortedList[0];
+      double[] values = Arrays.copyOf(list, list.length);
+      int k = (list.length > 2) ? (list.length / 2) + 1 : 0;
+      int lo = 0, hi = values.length - 1;
+
+      while(lo < hi){
+         //partition around the middle value of the range
+         double pivot = values[(lo + hi) >>> 1];
+         int i = lo, j = hi;
+         while(i <= j){
+            while(values[i] < pivot){i++;}
+            while(values[j] > pivot){j--;}
+            if(i <= j){
+               double tmp = values[i];
+               values[i] = values[j];
+               values[j] = tmp;
+               i++;
+               j--;
+            }
+         }
+
+         //keep the side that holds the k-th value
+         if(k <= j){hi = j;}
+         else if(k >= i){lo = i;}
+         else{break;}
       }
+
+      return values[k];
    }
 }
@@ -0,0 +1,138 @@
+/*
+FrameDecoder.java
+
+Description:
+   Scans raw telemetry bytes for the sync word and validates the checksum of
+   each candidate frame without converting the data to hex strings.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+import java.nio.ByteBuffer;
+
+public class FrameDecoder{
+   private int frameLength;
+   private byte[] sync;
+
+   //counters for the frames that were rejected since the last reset
+   private int
+      bad_checksums = 0,
+      short_frames = 0;
+
+   public FrameDecoder(final int length, final String syncWord){
+      frameLength = length;
+
+      //convert the hex sync word into the bytes we will be searching for
+      sync = new byte[syncWord.length() / 2];
+      for(int byte_i = 0; byte_i < sync.length; byte_i++){
+         sync[byte_i] = (byte)Integer.parseInt(
+            syncWord.substring(byte_i * 2, (byte_i * 2) + 2), 16
+         );
+      }
+   }
+
+   public int getFrameLength(){return frameLength;}
+   public int getBadChecksums(){return bad_checksums;}
+   public int getShortFrames(){return short_frames;}
+
+   public void resetCounts(){
+      bad_checksums = 0;
+      short_frames = 0;
+   }
+
+   //Returns the index of the next good frame in buf that starts at or after
+   //"from", or -1 if there are no more good frames. Candidate frames with a
+   //bad checksum are counted and the search continues one byte later so a
+   //frame is not lost when the sync word shows up in the data.
+   public int next(final ByteBuffer buf, final int from){
+      int
+         end = buf.limit(),
+         last_start = end - frameLength;
+
+      for(int pos = from; pos <= end - sync.length; pos++){
+         if(!isSync(buf, pos)){continue;}
+
+         if(pos > last_start){
+            //not enough bytes left for a full frame
+            short_frames++;
+            return -1;
+         }
+
+         if(checksum(buf, pos)){
+            return pos;
+         }else{
+            bad_checksums++;
+         }
+      }
+
+      return -1;
+   }
+
+   public int next(final byte[] bytes, final int length, final int from){
+      return next(ByteBuffer.wrap(bytes, 0, length), from);
+   }
+
+   //checks that the last 16-bit word of the frame is the sum of the others
+   public boolean checksum(final ByteBuffer buf, final int start){
+      int
+         sum = 0,
+         cksm_i = start + frameLength - 2;
+
+      for(int word_i = start; word_i < cksm_i; word_i += 2){
+         sum += ((buf.get(word_i) & 0xff) << 8) | (buf.get(word_i + 1) & 0xff);
+      }
+
+      int cksm = ((buf.get(cksm_i) & 0xff) << 8) | (buf.get(cksm_i + 1) & 0xff);
+
+      return cksm == (sum & 0xffff);
+   }
+
+   //copies a single frame out of the buffer without moving its position
+   public void copyFrame(final ByteBuffer buf, final int start, byte[] dest){
+      ByteBuffer src = buf.duplicate();
+      src.position(start);
+      src.get(dest, 0, frameLength);
+   }
+
+   //Reads "width" bits that start "shift" bits up from the least significant
+   //end of the frame at "start", the same as FrameView.bits() but without 
+   //copying the frame out of the buffer.
+   public long bits(
+      final ByteBuffer buf, final int start, final int shift, final int width
+   ){
+      int
+         first = start + frameLength - 1 - ((shift + width - 1) >> 3),
+         last = start + frameLength - 1 - (shift >> 3);
+      long value = 0;
+
+      for(int byte_i = first; byte_i <= last; byte_i++){
+         value = (value << 8) | (buf.get(byte_i) & 0xff);
+      }
+
+      return (value >>> (shift & 7)) & ((1L << width) - 1);
+   }
+
+   private boolean isSync(final ByteBuffer buf, final int pos){
+      for(int byte_i = 0; byte_i < sync.length; byte_i++){
+         if(buf.get(pos + byte_i) != sync[byte_i]){return false;}
+      }
+      return true;
+   }
+}
@@ -0,0 +1,68 @@
+/*
+FrameField.java
+
+Description:
+   Describes where a single variable sits in a telemetry frame: its bit
+   offset, width, how many times it repeats and how far apart the repeats
+   are, and the range of values it is allowed to take.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+public class FrameField{
+   public final String name;
+
+   //offset is counted in bits from the least significant end of the frame
+   //and is the position of the first repeat. Each following repeat sits
+   //"stride" bits closer to the end of the frame.
+   public final int offset, width, stride, repeat;
+
+   //values outside of min/max are replaced by fill
+   public final long min, max, fill;
+
+   //signed fields are sign extended from their top bit
+   public final boolean signed;
+
+   public FrameField(
+      final String name,
+      final int offset, final int width, final int stride, final int repeat,
+      final long min, final long max, final long fill,
+      final boolean signed
+   ){
+      this.name = name;
+      this.offset = offset;
+      this.width = width;
+      this.stride = stride;
+      this.repeat = repeat;
+      this.min = min;
+      this.max = max;
+      this.fill = fill;
+      this.signed = signed;
+   }
+
+   //a field that appears once in each frame
+   public FrameField(
+      final String name, final int offset, final int width,
+      final long min, final long max, final long fill,
+      final boolean signed
+   ){
+      this(name, offset, width, 0, 1, min, max, fill, signed);
+   }
+}
@@ -0,0 +1,138 @@
+/*
+FrameIndex.java
+
+Description:
+   A small binary index of the frames in a level zero file. For each frame it
+   lists the frame counter, where the frame starts in the file, and flags
+   telling what the DataHolder did with the frame. The index is saved next to
+   the level zero file so the file can be read again without searching it for
+   sync words and checking every checksum. A frame's place in the mod4, mod32
+   and mod40 groups is just its frame counter modulo 4, 32 or 40, so it is not
+   saved. When the file is loaded through the index, the flags are compared
+   with what the DataHolder does with each frame this time, so frames that are
+   now gated differently (after min_alt was changed) are reported.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class FrameIndex{
+   //index files are named after the level zero file with this added
+   public static final String SUFFIX = ".idx";
+
+   //flags saved for each frame
+   public static final int
+      ADDED = 1, //the frame was added to the DataHolder
+      GPS_VALID = 2, //the frame's gps word was in range
+      ALT_GATED = 4; //the frame was dropped for being below min_alt
+
+   //"BIDX" followed by the format version
+   private static final int MAGIC = 0x42494458, FORMAT = 2;
+
+   private int frameLength;
+   private int count = 0;
+   private int[] fc = new int[1024];
+   private long[] offset = new long[1024];
+   private byte[] flags = new byte[1024];
+
+   public FrameIndex(final int frameLength){
+      this.frameLength = frameLength;
+   }
+
+   public static File fileFor(final File l0File){
+      return new File(l0File.getPath() + SUFFIX);
+   }
+
+   public int getFrameLength(){return frameLength;}
+   public int size(){return count;}
+   public int getFC(final int frame_i){return fc[frame_i];}
+   public long getOffset(final int frame_i){return offset[frame_i];}
+   public int getFlags(final int frame_i){return flags[frame_i];}
+
+   public void add(final int frame_fc, final long frame_offset, final int f){
+      if(count == fc.length){
+         fc = Arrays.copyOf(fc, count * 2);
+         offset = Arrays.copyOf(offset, count * 2);
+         flags = Arrays.copyOf(flags, count * 2);
+      }
+      fc[count] = frame_fc;
+      offset[count] = frame_offset;
+      flags[count] = (byte)f;
+      count++;
+   }
+
+   //Saves the index. Each frame is stored as a 4 byte frame counter, an 8
+   //byte offset and one byte of flags.
+   public void write(final File file) throws IOException{
+      DataOutputStream out = new DataOutputStream(
+         new BufferedOutputStream(new FileOutputStream(file))
+      );
+      try{
+         out.writeInt(MAGIC);
+         out.writeInt(FORMAT);
+         out.writeInt(frameLength);
+         out.writeInt(count);
+         for(int frame_i = 0; frame_i < count; frame_i++){
+            out.writeInt(fc[frame_i]);
+            out.writeLong(offset[frame_i]);
+            out.writeByte(flags[frame_i]);
+         }
+      }finally{
+         out.close();
+      }
+   }
+
+   //Reads a saved index. Returns null if the file is missing or is not an
+   //index this version can read.
+   public static FrameIndex read(final File file) throws IOException{
+      if(!file.exists()){return null;}
+
+      DataInputStream in = new DataInputStream(
+         new BufferedInputStream(new FileInputStream(file))
+      );
+      try{
+         if(in.readInt() != MAGIC || in.readInt() != FORMAT){return null;}
+
+         FrameIndex index = new FrameIndex(in.readInt());
+         int frames = in.readInt();
+         for(int frame_i = 0; frame_i < frames; frame_i++){
+            int frame_fc = in.readInt();
+            long frame_offset = in.readLong();
+            index.add(frame_fc, frame_offset, in.readByte());
+         }
+         return index;
+      }catch(EOFException ex){
+         //the index was cut short
+         return null;
+      }finally{
+         in.close();
+      }
+   }
+}
@@ -0,0 +1,224 @@
+/*
+FrameLayout.java
+
+Description:
+   Table of where each variable is found in a telemetry frame for each
+   version of the DPU software. Each table is compiled once, when the class
+   loads, into flat arrays of bit offsets and limits so a frame can be decoded
+   with a single loop instead of a branch for every field. The versions each
+   table is used for are listed in TABLES and FIRST_VERSION.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+public class FrameLayout{
+   //field ids. Each layout has an entry for every id, in this order
+   public static final int
+      GPS = 0, PPS = 1,
+      MAGX = 2, MAGY = 3, MAGZ = 4,
+      HKPG = 5,
+      LC1 = 6, LC2 = 7, LC3 = 8, LC4 = 9, LC5 = 10, LC6 = 11,
+      MSPC = 12, SSPC = 13, RCNT = 14,
+      FIELD_CNT = 15;
+
+   //the frame counter word is the same for every version
+   public static final FrameField
+      VERSION = new FrameField(
+         "Version", 1691, 5,
+         Constants.VER_MIN, Constants.VER_MAX, Constants.VER_FILL, false
+      ),
+      PAYLOAD_ID = new FrameField(
+         "PayloadID", 1685, 6,
+         Constants.PAYID_MIN, Constants.PAYID_MAX, Constants.PAYID_FILL, false
+      ),
+      FRAME_COUNTER = new FrameField(
+         "FrameCounter", 1664, 21,
+         Constants.FC_MIN, Constants.FC_MAX, Constants.FC_FILL, false
+      );
+
+   //fields shared by all versions
+   private static final FrameField
+      //the gps word is multiplexed, so its limits are checked by DataHolder
+      GPS_FIELD = new FrameField(
+         "GPS", 1632, 32,
+         Integer.MIN_VALUE, Integer.MAX_VALUE, Constants.INT4_FILL, true
+      ),
+      PPS_FIELD = new FrameField(
+         "PPS", 1616, 16,
+         Constants.PPS_MIN, Constants.PPS_MAX, Constants.PPS_FILL, true
+      ),
+      //mag data 4 sets of xyz vectors. 24 bits/component
+      MAGX_FIELD = new FrameField(
+         "MAG_X", 1592, 24, 72, 4,
+         Constants.MAG_MIN, Constants.MAG_MAX, Constants.MAG_FILL, false
+      ),
+      MAGY_FIELD = new FrameField(
+         "MAG_Y", 1568, 24, 72, 4,
+         Constants.MAG_MIN, Constants.MAG_MAX, Constants.MAG_FILL, false
+      ),
+      MAGZ_FIELD = new FrameField(
+         "MAG_Z", 1544, 24, 72, 4,
+         Constants.MAG_MIN, Constants.MAG_MAX, Constants.MAG_FILL, false
+      ),
+      //mod40 housekeeping data: 16bits
+      HKPG_FIELD = new FrameField(
+         "HKPG", 1312, 16,
+         Constants.HKPG_MIN, Constants.HKPG_MAX, Constants.HKPG_FILL, false
+      ),
+      //medium spectra: 12 channels per frame, 16 bits/channels
+      MSPC_FIELD = new FrameField(
+         "MSPC", 336, 16, 16, 12,
+         Constants.MSPC_RAW_MIN, Constants.MSPC_RAW_MAX,
+         Constants.MSPC_RAW_FILL, false
+      ),
+      //slow spectra: 8 channels per frame, 16 bits/channels
+      SSPC_FIELD = new FrameField(
+         "SSPC", 144, 16, 16, 8,
+         Constants.SSPC_RAW_MIN, Constants.SSPC_RAW_MAX,
+         Constants.SSPC_RAW_FILL, false
+      ),
+      //rate counter: mod4 data, 16bits
+      RCNT_FIELD = new FrameField(
+         "RCNT", 16, 16,
+         Constants.RCNT_MIN, Constants.RCNT_MAX, Constants.RCNT_FILL, false
+      );
+
+   //fast spectra: 20 sets of 6 channel data.
+   private static final FrameField[] CURRENT = {
+      GPS_FIELD, PPS_FIELD, MAGX_FIELD, MAGY_FIELD, MAGZ_FIELD, HKPG_FIELD,
+      lightCurve("LC1", 1303, 9, 20),
+      lightCurve("LC2", 1294, 9, 20),
+      lightCurve("LC3", 1286, 8, 20),
+      lightCurve("LC4", 1277, 9, 20),
+      lightCurve("LC5", 1270, 7, 20),
+      lightCurve("LC6", 1264, 6, 20),
+      MSPC_FIELD, SSPC_FIELD, RCNT_FIELD
+   };
+
+   //old fast spectra: 20 sets of 4 channel data.
+   //ch1 and ch2 are 16 bits, ch3 and ch4 are 8bits
+   private static final FrameField[] VERSION_3 = {
+      GPS_FIELD, PPS_FIELD, MAGX_FIELD, MAGY_FIELD, MAGZ_FIELD, HKPG_FIELD,
+      lightCurve("LC1", 1296, 16, 20),
+      lightCurve("LC2", 1280, 16, 20),
+      lightCurve("LC3", 1272, 8, 20),
+      lightCurve("LC4", 1264, 8, 20),
+      lightCurve("LC5", 0, 0, 0),
+      lightCurve("LC6", 0, 0, 0),
+      MSPC_FIELD, SSPC_FIELD, RCNT_FIELD
+   };
+
+   //Each table and the first DPU software version that uses it, oldest 
+   //first. A table is used up to the version before the next one starts. A
+   //new frame version only needs its table added to this list.
+   private static final FrameField[][] TABLES = {VERSION_3, CURRENT};
+   private static final int[] FIRST_VERSION = {0, 4};
+
+   //compiled layout for each of the 32 possible version numbers, built when
+   //the class loads so looking one up never locks
+   private static final FrameLayout[] LAYOUTS = new FrameLayout[32];
+   static{
+      for(int table_i = 0; table_i < TABLES.length; table_i++){
+         FrameLayout layout = new FrameLayout(TABLES[table_i]);
+         int last = (table_i + 1 < TABLES.length) ? 
+            FIRST_VERSION[table_i + 1] : LAYOUTS.length;
+         for(int ver_i = FIRST_VERSION[table_i]; ver_i < last; ver_i++){
+            LAYOUTS[ver_i] = layout;
+         }
+      }
+   }
+
+   //flattened plan: one entry for every value pulled out of a frame
+   private int[] shift, width, sign_ext;
+   private long[] min, max, fill;
+
+   //position of each field's first value in the flattened plan
+   private int[] start, count;
+   private int size;
+
+   private FrameLayout(final FrameField[] table){
+      start = new int[FIELD_CNT];
+      count = new int[FIELD_CNT];
+
+      size = 0;
+      for(int field_i = 0; field_i < FIELD_CNT; field_i++){
+         start[field_i] = size;
+         count[field_i] = table[field_i].repeat;
+         size += table[field_i].repeat;
+      }
+
+      shift = new int[size];
+      width = new int[size];
+      sign_ext = new int[size];
+      min = new long[size];
+      max = new long[size];
+      fill = new long[size];
+
+      for(int field_i = 0; field_i < FIELD_CNT; field_i++){
+         FrameField field = table[field_i];
+         for(int rep_i = 0; rep_i < field.repeat; rep_i++){
+            int slot = start[field_i] + rep_i;
+            shift[slot] = field.offset - (field.stride * rep_i);
+            width[slot] = field.width;
+            sign_ext[slot] = field.signed ? 64 - field.width : 0;
+            min[slot] = field.min;
+            max[slot] = field.max;
+            fill[slot] = field.fill;
+         }
+      }
+   }
+
+   private static FrameField lightCurve(
+      final String name, final int offset, final int width, final int repeat
+   ){
+      return new FrameField(
+         name, offset, width, 48, repeat,
+         Constants.FSPC_RAW_MIN, Constants.FSPC_RAW_MAX,
+         Constants.FSPC_RAW_FILL, false
+      );
+   }
+
+   public static FrameLayout forVersion(final int version){
+      return LAYOUTS[version & 31];
+   }
+
+   public int start(final int field){return start[field];}
+   public int count(final int field){return count[field];}
+   public int size(){return size;}
+
+   //Pulls every value out of the frame. Values outside of their field's
+   //limits are replaced with the fill value and marked in out_of_range.
+   public void decode(
+      final FrameView frame, long[] values, boolean[] out_of_range
+   ){
+      for(int slot_i = 0; slot_i < size; slot_i++){
+         long value = frame.bits(shift[slot_i], width[slot_i]);
+         value = (value << sign_ext[slot_i]) >> sign_ext[slot_i];
+
+         if(value < min[slot_i] || value > max[slot_i]){
+            values[slot_i] = fill[slot_i];
+            out_of_range[slot_i] = true;
+         }else{
+            values[slot_i] = value;
+            out_of_range[slot_i] = false;
+         }
+      }
+   }
+}
@@ -0,0 +1,69 @@
+/*
+FrameView.java
+
+Description:
+   Reads bit fields out of a raw telemetry frame held in a byte array. Field
+   positions are given the same way they were with BigInteger.shiftRight(),
+   counting bits up from the least significant end of the frame.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+public class FrameView{
+   private byte[] bytes;
+   private int length;
+
+   public FrameView(){
+      bytes = new byte[0];
+      length = 0;
+   }
+
+   public FrameView(final byte[] frame){
+      wrap(frame);
+   }
+
+   //points the view at a new frame without copying it
+   public FrameView wrap(final byte[] frame){
+      bytes = frame;
+      length = frame.length;
+      return this;
+   }
+
+   public byte[] getBytes(){return bytes;}
+
+   //Returns "width" bits (at most 57) that start "shift" bits up from the
+   //least significant end of the frame. Bits that fall off the front of the
+   //frame are read as 0, the same as shifting a positive BigInteger.
+   public long bits(final int shift, final int width){
+      int
+         first = length - 1 - ((shift + width - 1) >> 3),
+         last = length - 1 - (shift >> 3);
+      long value = 0;
+
+      for(int byte_i = first; byte_i <= last; byte_i++){
+         value <<= 8;
+         if(byte_i >= 0){
+            value |= bytes[byte_i] & 0xff;
+         }
+      }
+
+      return (value >>> (shift & 7)) & ((1L << width) - 1);
+   }
+}
@@ -28,7 +28,6 @@ import gsfc.nssdc.cdf.CDF;
 import gsfc.nssdc.cdf.CDFException;
 import gsfc.nssdc.cdf.CDFConstants;
 import gsfc.nssdc.cdf.util.CDFTT2000;
-import gsfc.nssdc.cdf.Variable;
 
 import java.io.File;
 import java.io.IOException;
@@ -42,17 +41,16 @@ import java.util.Arrays;
 public class LevelOne extends CDFWriter{
 
    public LevelOne(
-      final String d, final String p, 
+      final DataHolder data, final String d, final String p, 
       final String f, final String s, final String dir
    ) throws IOException
    {
-      super(d, p, f, s, dir, "Level One");
+      super(data, d, p, f, s, dir, "Level One");
    }
    
    //Saveve the EPHM data to CDF the file
    public void doGpsCdf(int first, int last, int date) throws CDFException{
       CDF cdf;
-      Variable var;
       int numOfRecs = last - first;
       int[] 
          frameGroup = new int[numOfRecs],
@@ -65,13 +63,13 @@ public class LevelOne extends CDFWriter{
       //select values for this date
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
         //convert lat and lon to physical units
-        gps[Constants.ALT_I][rec_i] = CDF_Gen.data.gps[Constants.ALT_I][data_i];
-        gps[Constants.TIME_I][rec_i]=CDF_Gen.data.gps[Constants.TIME_I][data_i];
-        gps[Constants.LAT_I][rec_i] = CDF_Gen.data.gps[Constants.LAT_I][data_i];
-        gps[Constants.LON_I][rec_i] = CDF_Gen.data.gps[Constants.LON_I][data_i];
-        frameGroup[rec_i] = CDF_Gen.data.frame_mod4[data_i];
-        epoch[rec_i] = CDF_Gen.data.epoch_mod4[data_i];
-        q[rec_i] = CDF_Gen.data.gps_q[data_i];
+        gps[Constants.ALT_I][rec_i] = data.gps[Constants.ALT_I][data_i];
+        gps[Constants.TIME_I][rec_i]=data.gps[Constants.TIME_I][data_i];
+        gps[Constants.LAT_I][rec_i] = data.gps[Constants.LAT_I][data_i];
+        gps[Constants.LON_I][rec_i] = data.gps[Constants.LON_I][data_i];
+        frameGroup[rec_i] = data.frame_mod4[data_i];
+        epoch[rec_i] = data.epoch_mod4[data_i];
+        q[rec_i] = data.gps_q[data_i];
       }
 
       //make sure there is a CDF file to open
@@ -87,85 +85,35 @@ public class LevelOne extends CDFWriter{
       //open EPHM CDF and save the reference in the cdf variable
       cdf = openCDF(destName);
       
-      var = cdf.getVariable("GPS_Alt");
       System.out.println("GPS_Alt...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1,
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         gps[Constants.ALT_I]
-      );
+      putRecords(cdf, "GPS_Alt", numOfRecs, gps[Constants.ALT_I]);
 
-      var = cdf.getVariable("ms_of_week");
       System.out.println("ms_of_week...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         gps[Constants.TIME_I]
-      );
+      putRecords(cdf, "ms_of_week", numOfRecs, gps[Constants.TIME_I]);
 
-      var = cdf.getVariable("GPS_Lat");
       System.out.println("GPS_Lat...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         gps[Constants.LAT_I] 
-      );
+      putRecords(cdf, "GPS_Lat", numOfRecs, gps[Constants.LAT_I]);
 
-      var = cdf.getVariable("GPS_Lon");
       System.out.println("GPS_Lon...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         gps[Constants.LON_I]
-      );
+      putRecords(cdf, "GPS_Lon", numOfRecs, gps[Constants.LON_I]);
 
-      var = cdf.getVariable("FrameGroup");
       System.out.println("FrameGroup...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         frameGroup
-      );
+      putRecords(cdf, "FrameGroup", numOfRecs, frameGroup);
 
-      var = cdf.getVariable("Epoch");
       System.out.println("Epoch...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         epoch
-      );
+      putRecords(cdf, "Epoch", numOfRecs, epoch);
       
-      var = cdf.getVariable("Quality");
       System.out.println("Quality...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         q
-      );
+      putRecords(cdf, "Quality", numOfRecs, q);
 
       System.out.println("Done with EPHM!");
       //close current cdf
-      cdf.close();
+      closeCDF(cdf);
    }
    
    //write the misc file
    public void doMiscCdf(int first, int last, int date) throws CDFException{
       CDF cdf;
-      Variable var;
       
       int numOfRecs = last - first;
       short[] 
@@ -184,14 +132,14 @@ public class LevelOne extends CDFWriter{
       System.out.println("\nSaving MISC Level One CDF...");
 
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-        pps[rec_i] = CDF_Gen.data.pps[data_i];
-        version[rec_i] = CDF_Gen.data.ver[data_i];
-        payID[rec_i] = CDF_Gen.data.payID[data_i];
-        slope[rec_i] = CDF_Gen.data.time_model_slope[data_i];
-        intercept[rec_i] = CDF_Gen.data.time_model_intercept[rec_i];
-        frameGroup[rec_i] = CDF_Gen.data.frame_1Hz[data_i];
-        epoch[rec_i] = CDF_Gen.data.epoch_1Hz[data_i];
-        q[rec_i] = CDF_Gen.data.pps_q[data_i];
+        pps[rec_i] = data.pps[data_i];
+        version[rec_i] = data.ver[data_i];
+        payID[rec_i] = data.payID[data_i];
+        slope[rec_i] = data.time_model_slope[data_i];
+        intercept[rec_i] = data.time_model_intercept[rec_i];
+        frameGroup[rec_i] = data.frame_1Hz[data_i];
+        epoch[rec_i] = data.epoch_1Hz[data_i];
+        q[rec_i] = data.pps_q[data_i];
       }
 
       String srcName = 
@@ -203,91 +151,34 @@ public class LevelOne extends CDFWriter{
 
       cdf = openCDF(destName);
       
-      var = cdf.getVariable("GPS_PPS");
       System.out.println("GPS_PPS...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1L, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         pps
-      );
+      putRecords(cdf, "GPS_PPS", numOfRecs, pps);
 
-      var = cdf.getVariable("Version");
       System.out.println("Version...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1L, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         version
-      );
+      putRecords(cdf, "Version", numOfRecs, version);
 
-      var = cdf.getVariable("Payload_ID");
       System.out.println("Payload_ID...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1L, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         payID
-      );
+      putRecords(cdf, "Payload_ID", numOfRecs, payID);
 
-      var = cdf.getVariable("Time_Model_Slope");
       System.out.println("Time_Model_Slope...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1L, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         slope 
-      );
+      putRecords(cdf, "Time_Model_Slope", numOfRecs, slope);
 
-      var = cdf.getVariable("Time_Model_Intercept");
       System.out.println("Time_Model_Intercept...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1L, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         intercept
-      );
+      putRecords(cdf, "Time_Model_Intercept", numOfRecs, intercept);
 
-      var = cdf.getVariable("FrameGroup");
       System.out.println("FrameGroup...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1L, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         frameGroup 
-      );
-      var = cdf.getVariable("Epoch");
+      putRecords(cdf, "FrameGroup", numOfRecs, frameGroup);
       System.out.println("Epoch...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1L,
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         epoch
-      );
+      putRecords(cdf, "Epoch", numOfRecs, epoch);
 
-      var = cdf.getVariable("Quality");
       System.out.println("Quality...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1L, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         q
-      );
+      putRecords(cdf, "Quality", numOfRecs, q);
 
-      cdf.close();
+      closeCDF(cdf);
    }
    
    public void doMagCdf(int first, int last, int date) throws CDFException{
       CDF cdf;
-      Variable var;
       
       int numOfRecs = last - first;
       int[] 
@@ -310,81 +201,38 @@ public class LevelOne extends CDFWriter{
       cdf = openCDF(destName);
      
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         magx[rec_i] = CDF_Gen.data.magx[data_i];
-         magy[rec_i] = CDF_Gen.data.magy[data_i];
-         magz[rec_i] = CDF_Gen.data.magz[data_i];
-         frameGroup[rec_i] = CDF_Gen.data.frame_4Hz[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_4Hz[data_i];
-         q[rec_i] = CDF_Gen.data.magn_q[data_i];
+         magx[rec_i] = data.magx[data_i];
+         magy[rec_i] = data.magy[data_i];
+         magz[rec_i] = data.magz[data_i];
+         frameGroup[rec_i] = data.getFrame(Cadence.FOUR_HZ, data_i);
+         epoch[rec_i] = data.getEpoch(Cadence.FOUR_HZ, data_i);
+         q[rec_i] = data.magn_q[data_i];
       }
 
-      var = cdf.getVariable("MAG_X");
       System.out.println("MAG_X... ");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         magx 
-      );
+      putRecords(cdf, "MAG_X", numOfRecs, magx);
 
-      var = cdf.getVariable("MAG_Y");
       System.out.println("MAG_Y...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         magy
-      );
+      putRecords(cdf, "MAG_Y", numOfRecs, magy);
 
-      var = cdf.getVariable("MAG_Z");
       System.out.println("MAG_Z...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         magz
-      );
+      putRecords(cdf, "MAG_Z", numOfRecs, magz);
 
-      var = cdf.getVariable("FrameGroup");
       System.out.println("FrameGroup...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         frameGroup
-      );
+      putRecords(cdf, "FrameGroup", numOfRecs, frameGroup);
 
-      var = cdf.getVariable("Epoch");
       System.out.println("Epoch...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         epoch
-      );
+      putRecords(cdf, "Epoch", numOfRecs, epoch);
 
-      var = cdf.getVariable("Quality");
       System.out.println("Quality...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         q
-      );
+      putRecords(cdf, "Quality", numOfRecs, q);
 
-      cdf.close();
+      closeCDF(cdf);
 
    }
    
    public void doHkpgCdf(int first, int last, int date) throws CDFException{
       CDF cdf;
-      Variable var;
       
       int numOfRecs = last - first;
       short []
@@ -416,139 +264,61 @@ public class LevelOne extends CDFWriter{
       for(int var_i = 0; var_i < 36; var_i++){
          hkpg = new long[numOfRecs];
          for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-            hkpg[rec_i] =  CDF_Gen.data.hkpg[var_i][data_i];
+            hkpg[rec_i] =  data.hkpg[var_i][data_i];
          }
 
-         var = cdf.getVariable(CDF_Gen.data.hkpg_label[var_i]);
-         System.out.println(CDF_Gen.data.hkpg_label[var_i] + "...");
-         var.putHyperData(
-            var.getNumWrittenRecords(), numOfRecs, 1, 
-            new long[] {0}, 
-            new long[] {1}, 
-            new long[] {1}, 
-            hkpg
-         );
+         System.out.println(data.hkpg_label[var_i] + "...");
+         putRecords(cdf, data.hkpg_label[var_i], numOfRecs, hkpg);
       }
 
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         sats[rec_i] = CDF_Gen.data.sats[data_i];
-         offset[rec_i] = CDF_Gen.data.offset[data_i];
-         termStat[rec_i] = CDF_Gen.data.termStat[data_i];
-         modemCnt[rec_i] = CDF_Gen.data.modemCnt[data_i];
-         dcdCnt[rec_i] = CDF_Gen.data.dcdCnt[data_i];
-         cmdCnt[rec_i] = CDF_Gen.data.cmdCnt[data_i];
-         frameGroup[rec_i] = CDF_Gen.data.frame_mod40[data_i];
-         weeks[rec_i] = CDF_Gen.data.weeks[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_mod40[data_i];
-         q[rec_i] = CDF_Gen.data.hkpg_q[data_i];
+         sats[rec_i] = data.sats[data_i];
+         offset[rec_i] = data.offset[data_i];
+         termStat[rec_i] = data.termStat[data_i];
+         modemCnt[rec_i] = data.modemCnt[data_i];
+         dcdCnt[rec_i] = data.dcdCnt[data_i];
+         cmdCnt[rec_i] = data.cmdCnt[data_i];
+         frameGroup[rec_i] = data.frame_mod40[data_i];
+         weeks[rec_i] = data.weeks[data_i];
+         epoch[rec_i] = data.epoch_mod40[data_i];
+         q[rec_i] = data.hkpg_q[data_i];
       }
 
-      var = cdf.getVariable("numOfSats");
       System.out.println("numOfSats...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         sats
-      );
+      putRecords(cdf, "numOfSats", numOfRecs, sats);
 
-      var = cdf.getVariable("timeOffset");
       System.out.println("timeOffset...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         offset
-      );
+      putRecords(cdf, "timeOffset", numOfRecs, offset);
       
-      var = cdf.getVariable("termStatus");
       System.out.println("termStatus...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         termStat
-      );
+      putRecords(cdf, "termStatus", numOfRecs, termStat);
 
-      var = cdf.getVariable("cmdCounter");
       System.out.println("cmdCounter...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         cmdCnt
-      );
+      putRecords(cdf, "cmdCounter", numOfRecs, cmdCnt);
 
-      var = cdf.getVariable("modemCounter");
       System.out.println("modemCounter...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         modemCnt
-      );
+      putRecords(cdf, "modemCounter", numOfRecs, modemCnt);
 
-      var = cdf.getVariable("dcdCounter");
       System.out.println("dcdCounter...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         dcdCnt
-      );
+      putRecords(cdf, "dcdCounter", numOfRecs, dcdCnt);
 
-      var = cdf.getVariable("weeks");
       System.out.println("weeks...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         weeks
-      );
+      putRecords(cdf, "weeks", numOfRecs, weeks);
 
-      var = cdf.getVariable("FrameGroup");
       System.out.println("FrameGroup...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         frameGroup
-      );
+      putRecords(cdf, "FrameGroup", numOfRecs, frameGroup);
 
-      var = cdf.getVariable("Epoch");
       System.out.println("Epoch...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         epoch
-      );
+      putRecords(cdf, "Epoch", numOfRecs, epoch);
 
-      var = cdf.getVariable("Quality");
       System.out.println("Quality...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         q
-      );
+      putRecords(cdf, "Quality", numOfRecs, q);
 
-      cdf.close();
+      closeCDF(cdf);
    }
 
    public void doFspcCdf(int first, int last, int date) throws CDFException{
       CDF cdf;
-      Variable var;
       int numOfRecs = last - first;
 
       int[] 
@@ -570,113 +340,49 @@ public class LevelOne extends CDFWriter{
       cdf = openCDF(destName);
       
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         frameGroup[rec_i] = CDF_Gen.data.frame_20Hz[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_20Hz[data_i];
-         q[rec_i] = CDF_Gen.data.fspc_q[data_i];
-         lc[0][rec_i] = CDF_Gen.data.lc1[data_i];
-         lc[1][rec_i] = CDF_Gen.data.lc2[data_i];
-         lc[2][rec_i] = CDF_Gen.data.lc3[data_i];
-         lc[3][rec_i] = CDF_Gen.data.lc4[data_i];
-         lc[4][rec_i] = CDF_Gen.data.lc5[data_i];
-         lc[5][rec_i] = CDF_Gen.data.lc6[data_i];
+         frameGroup[rec_i] = data.getFrame(Cadence.TWENTY_HZ, data_i);
+         epoch[rec_i] = data.getEpoch(Cadence.TWENTY_HZ, data_i);
+         q[rec_i] = data.fspc_q[data_i];
+         lc[0][rec_i] = data.lc1[data_i];
+         lc[1][rec_i] = data.lc2[data_i];
+         lc[2][rec_i] = data.lc3[data_i];
+         lc[3][rec_i] = data.lc4[data_i];
+         lc[4][rec_i] = data.lc5[data_i];
+         lc[5][rec_i] = data.lc6[data_i];
       }
 
-      var = cdf.getVariable("FSPC1a");
       System.out.println("FSPC1a...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         lc[0]
-      );
+      putRecords(cdf, "FSPC1a", numOfRecs, lc[0]);
       
-      var = cdf.getVariable("FSPC1b");
       System.out.println("FSPC1b...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         lc[1]
-      );
+      putRecords(cdf, "FSPC1b", numOfRecs, lc[1]);
 
-      var = cdf.getVariable("FSPC1c");
       System.out.println("FSPC1c...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         lc[2]
-      );
+      putRecords(cdf, "FSPC1c", numOfRecs, lc[2]);
 
-      var = cdf.getVariable("FSPC2");
       System.out.println("FSPC2...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         lc[3]
-      );
+      putRecords(cdf, "FSPC2", numOfRecs, lc[3]);
 
-      var = cdf.getVariable("FSPC3");
       System.out.println("FSPC3...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         lc[4]
-      );
+      putRecords(cdf, "FSPC3", numOfRecs, lc[4]);
 
-      var = cdf.getVariable("FSPC4");
       System.out.println("FSPC4...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         lc[5]
-      );
+      putRecords(cdf, "FSPC4", numOfRecs, lc[5]);
 
-      var = cdf.getVariable("FrameGroup");
       System.out.println("FrameGroup...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         frameGroup
-      );
+      putRecords(cdf, "FrameGroup", numOfRecs, frameGroup);
 
-      var = cdf.getVariable("Epoch");
       System.out.println("Epoch...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         epoch
-      );
+      putRecords(cdf, "Epoch", numOfRecs, epoch);
 
-      var = cdf.getVariable("Quality");
       System.out.println("Quality...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         q
-      );
+      putRecords(cdf, "Quality", numOfRecs, q);
 
-      cdf.close();
+      closeCDF(cdf);
    }
 
    public void doMspcCdf(int first, int last, int date) throws CDFException{
       CDF cdf;
-      Variable var;
       
       int numOfRecs = last - first;
       int[] 
@@ -687,10 +393,10 @@ public class LevelOne extends CDFWriter{
       int[][] mspc = new int[numOfRecs][48];
       
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         frameGroup[rec_i] = CDF_Gen.data.frame_mod4[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_mod4[data_i];
-         q[rec_i] = CDF_Gen.data.mspc_q[data_i];
-         mspc[rec_i] = CDF_Gen.data.mspc[data_i];
+         frameGroup[rec_i] = data.frame_mod4[data_i];
+         epoch[rec_i] = data.epoch_mod4[data_i];
+         q[rec_i] = data.mspc_q[data_i];
+         mspc[rec_i] = data.mspc[data_i];
 
       }
       System.out.println("\nSaving MSPC...");
@@ -705,52 +411,27 @@ public class LevelOne extends CDFWriter{
 
       cdf = openCDF(destName);
 
-      var = cdf.getVariable("MSPC");
       System.out.println("Spectrum Arrays...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0, 0}, 
-         new long[] {48, 1}, 
-         new long[] {1, 1}, 
+      putRecords(
+         cdf, "MSPC", numOfRecs, 
+         new long[] {0, 0}, new long[] {48, 1}, new long[] {1, 1}, 
          mspc
       );
 
-      var = cdf.getVariable("FrameGroup");
       System.out.println("FrameGroup...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         frameGroup
-      );
+      putRecords(cdf, "FrameGroup", numOfRecs, frameGroup);
 
-      var = cdf.getVariable("Epoch");
       System.out.println("Epoch...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         epoch
-      );
+      putRecords(cdf, "Epoch", numOfRecs, epoch);
 
-      var = cdf.getVariable("Quality");
       System.out.println("Quality...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         q
-      );
+      putRecords(cdf, "Quality", numOfRecs, q);
 
-      cdf.close();
+      closeCDF(cdf);
    }
 
    public void doSspcCdf(int first, int last, int date) throws CDFException{
       CDF cdf;
-      Variable var;
       
       int numOfRecs = last - first;
       int[] 
@@ -760,10 +441,10 @@ public class LevelOne extends CDFWriter{
       int[][] sspc = new int[numOfRecs][256];
 
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         frameGroup[rec_i] = CDF_Gen.data.frame_mod32[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_mod32[data_i];
-         q[rec_i] = CDF_Gen.data.sspc_q[data_i];
-         sspc[rec_i] = CDF_Gen.data.sspc[data_i];
+         frameGroup[rec_i] = data.frame_mod32[data_i];
+         epoch[rec_i] = data.epoch_mod32[data_i];
+         q[rec_i] = data.sspc_q[data_i];
+         sspc[rec_i] = data.sspc[data_i];
       }
 
       System.out.println("\nSaving SSPC...");
@@ -777,52 +458,27 @@ public class LevelOne extends CDFWriter{
 
       cdf = openCDF(destName);
 
-      var = cdf.getVariable("SSPC");
       System.out.println("Spectrum Arrays...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {256, 1}, 
-         new long[] {1}, 
+      putRecords(
+         cdf, "SSPC", numOfRecs, 
+         new long[] {0}, new long[] {256, 1}, new long[] {1}, 
          sspc
       );
 
-      var = cdf.getVariable("FrameGroup");
       System.out.println("FrameGroup...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         frameGroup
-      );
+      putRecords(cdf, "FrameGroup", numOfRecs, frameGroup);
 
-      var = cdf.getVariable("Epoch");
       System.out.println("Epoch...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         epoch
-      );
+      putRecords(cdf, "Epoch", numOfRecs, epoch);
 
-      var = cdf.getVariable("Quality");
       System.out.println("Quality...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         q
-      );
+      putRecords(cdf, "Quality", numOfRecs, q);
 
-      cdf.close();
+      closeCDF(cdf);
    }
 
    public void doRcntCdf(int first, int last, int date) throws CDFException{
       CDF cdf;
-      Variable var;
       
       int numOfRecs = last - first;
       int[] 
@@ -832,13 +488,13 @@ public class LevelOne extends CDFWriter{
       long[][] rc = new long[4][numOfRecs];
 
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         frameGroup[rec_i] = CDF_Gen.data.frame_mod4[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_mod4[data_i];
-         q[rec_i] = CDF_Gen.data.rcnt_q[data_i];
-         rc[0][rec_i] = CDF_Gen.data.rcnt[0][data_i];
-         rc[1][rec_i] = CDF_Gen.data.rcnt[1][data_i];
-         rc[2][rec_i] = CDF_Gen.data.rcnt[2][data_i];
-         rc[3][rec_i] = CDF_Gen.data.rcnt[3][data_i];
+         frameGroup[rec_i] = data.frame_mod4[data_i];
+         epoch[rec_i] = data.epoch_mod4[data_i];
+         q[rec_i] = data.rcnt_q[data_i];
+         rc[0][rec_i] = data.rcnt[0][data_i];
+         rc[1][rec_i] = data.rcnt[1][data_i];
+         rc[2][rec_i] = data.rcnt[2][data_i];
+         rc[3][rec_i] = data.rcnt[3][data_i];
       }
          
       System.out.println("\nSaving RCNT...");
@@ -853,76 +509,27 @@ public class LevelOne extends CDFWriter{
 
       cdf = openCDF(destName);
 
-      var = cdf.getVariable("Interrupt");
       System.out.println("Interrupt...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         rc[0]
-      );
+      putRecords(cdf, "Interrupt", numOfRecs, rc[0]);
 
-      var = cdf.getVariable("LowLevel");
       System.out.println("LowLevel...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         rc[1]
-      );
+      putRecords(cdf, "LowLevel", numOfRecs, rc[1]);
 
-      var = cdf.getVariable("PeakDet");
       System.out.println("PeakDet...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         rc[2]
-      );
+      putRecords(cdf, "PeakDet", numOfRecs, rc[2]);
 
-      var = cdf.getVariable("HighLevel");
       System.out.println("HighLevel...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         rc[3]
-      );
+      putRecords(cdf, "HighLevel", numOfRecs, rc[3]);
 
-      var = cdf.getVariable("FrameGroup");
       System.out.println("FrameGroup...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         frameGroup
-      );
+      putRecords(cdf, "FrameGroup", numOfRecs, frameGroup);
 
-      var = cdf.getVariable("Epoch");
       System.out.println("Epoch...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1},
-         epoch
-      );
+      putRecords(cdf, "Epoch", numOfRecs, epoch);
 
-      var = cdf.getVariable("Quality");
       System.out.println("Quality...");
-      var.putHyperData(
-         var.getNumWrittenRecords(), numOfRecs, 1, 
-         new long[] {0}, 
-         new long[] {1}, 
-         new long[] {1}, 
-         q
-      );
+      putRecords(cdf, "Quality", numOfRecs, q);
 
-      cdf.close();
+      closeCDF(cdf);
    }
  }
@@ -27,7 +27,6 @@ package edu.ucsc.barrel.cdf_gen;
 
 import gsfc.nssdc.cdf.CDFException;
 import gsfc.nssdc.cdf.CDFConstants;
-import gsfc.nssdc.cdf.util.CDFTT2000;
 
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
@@ -46,11 +45,11 @@ import java.util.HashMap;
 public class LevelTwo extends CDFWriter{
 
    public LevelTwo(
-      final String d, final String p, 
-      final String f, final String s, final String dir 
+      final DataHolder data, final String d, final String p, 
+      final String f, final String s, final String dir
    ) throws IOException
    {
-      super(d, p, f, s, dir, "Level Two");
+      super(data, d, p, f, s, dir, "Level Two");
    }
    
    //Convert the EPHM data and save it to CDF files
@@ -76,6 +75,8 @@ public class LevelTwo extends CDFWriter{
       int[] 
          frameGroup = new int[numOfRecs],
          q = new int[numOfRecs]; 
+      long
+         day_start;
       long[] 
          epoch_parts = new long[9],
          epoch = new long[numOfRecs],
@@ -94,46 +95,48 @@ public class LevelTwo extends CDFWriter{
       d.set(Calendar.DAY_OF_MONTH, day);
       day_of_year = d.get(Calendar.DAY_OF_YEAR);
 
+      //the GPS time of each record is its second of the day added to the
+      //start of the day, which is only converted once
+      day_start = CDFWriter.tt2000(year + 2000, month - 1, day);
+
       //convert lat, lon, and alt values and select values for this date
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
          //convert mm to km
-         alt[rec_i] = CDF_Gen.data.gps[Constants.ALT_I][data_i];
+         alt[rec_i] = data.gps[Constants.ALT_I][data_i];
          alt[rec_i] = (alt[rec_i] != Constants.ALT_RAW_FILL) ?
             alt[rec_i] / 1000000 :  Constants.ALT_FILL;
 
          //convert lat and lon to physical units
-         lat[rec_i] = CDF_Gen.data.gps[Constants.LAT_I][data_i];
+         lat[rec_i] = data.gps[Constants.LAT_I][data_i];
          lat[rec_i] = (lat[rec_i] != Constants.LAT_RAW_FILL) ? 
             (lat[rec_i] * 
             Float.intBitsToFloat(Integer.valueOf("33B40000", 16).intValue())) :
             Constants.LAT_FILL;
 
-         lon[rec_i] = CDF_Gen.data.gps[Constants.LON_I][data_i];
+         lon[rec_i] = data.gps[Constants.LON_I][data_i];
          lon[rec_i] = (lon[rec_i] != Constants.LON_RAW_FILL) ?
             (lon[rec_i] *= 
             Float.intBitsToFloat(Integer.valueOf("33B40000", 16).intValue())) :
             Constants.LON_FILL;
 
          //calculate the GPS time
-         if(CDF_Gen.data.ms_of_week[data_i] != Constants.MS_WEEK_FILL){
-            sec = CDF_Gen.data.ms_of_week[data_i] / 1000; //convert ms to sec
+         if(data.ms_of_week[data_i] != Constants.MS_WEEK_FILL){
+            sec = data.ms_of_week[data_i] / 1000; //convert ms to sec
             sec %= 86400; //remove any complete days
             hour = sec / 3600;
             sec %= 3600;
             min = sec / 60;
             sec %= 60;
-            gps_time[rec_i] = CDFTT2000.compute(
-               (long)(year + 2000), (long)(month - 1), (long)day, (long)hour, 
-               (long)min, (long)sec, 0L, 0L, 0L
-            );  
+            gps_time[rec_i] = 
+               day_start + ((hour * 3600L) + (min * 60L) + sec) * 1000000000L;
          }else{
             gps_time[rec_i] = 0;
          }
          
          //save the values from the other variables
-         frameGroup[rec_i] = CDF_Gen.data.frame_mod4[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_mod4[data_i];
-         q[rec_i] = CDF_Gen.data.gps_q[data_i];
+         frameGroup[rec_i] = data.frame_mod4[data_i];
+         epoch[rec_i] = data.epoch_mod4[data_i];
+         q[rec_i] = data.gps_q[data_i];
 
          //keep track of which frames have complete GPS values
          if(
@@ -147,7 +150,7 @@ public class LevelTwo extends CDFWriter{
          }
 
          //calculate the current time in seconds of day
-         epoch_parts = CDFTT2000.breakdown(epoch[rec_i]);
+         epoch_parts = CDFWriter.tt2000Parts(epoch[rec_i]);
          sec_of_day = 
             (epoch_parts[3] * 3600) + // hours
             (epoch_parts[4] * 60) + //minutes
@@ -258,30 +261,33 @@ public class LevelTwo extends CDFWriter{
          outputPath + "/" + date + "/" + "bar_" + id + 
          "_l2_" + "ephm" + "_20" + date +  "_v" + revNum + ".cdf";
      
-      Ephm ephm = new Ephm(destName, "bar_" + id, date, 2);
-
-      System.out.println("GPS_Alt");
-      ephm.getCDF().addData("GPS_Alt", alt);
-      System.out.println("GPS_Lon");
-      ephm.getCDF().addData("GPS_Lon", lon);
-      System.out.println("GPS_Lat");
-      ephm.getCDF().addData("GPS_Lat", lat);
-      System.out.println("MLT_Kp2");
-      ephm.getCDF().addData("MLT_Kp2", mlt2);
-      System.out.println("MLT_Kp6");
-      ephm.getCDF().addData("MLT_Kp6", mlt6);
-      System.out.println("L_Kp2");
-      ephm.getCDF().addData("L_Kp2", l2);
-      System.out.println("L_Kp6");
-      ephm.getCDF().addData("L_Kp6", l6);
-      System.out.println("FrameGroup");
-      ephm.getCDF().addData("FrameGroup", frameGroup);
-      System.out.println("Epoch");
-      ephm.getCDF().addData("Epoch", epoch);
-      System.out.println("Q");
-      ephm.getCDF().addData("Q", q);
-
-      ephm.close();
+      //the CDF library can only be used by one thread at a time
+      synchronized(CDF_LOCK){
+         Ephm ephm = new Ephm(destName, "bar_" + id, date, 2);
+
+         System.out.println("GPS_Alt");
+         ephm.getCDF().addData("GPS_Alt", alt);
+         System.out.println("GPS_Lon");
+         ephm.getCDF().addData("GPS_Lon", lon);
+         System.out.println("GPS_Lat");
+         ephm.getCDF().addData("GPS_Lat", lat);
+         System.out.println("MLT_Kp2");
+         ephm.getCDF().addData("MLT_Kp2", mlt2);
+         System.out.println("MLT_Kp6");
+         ephm.getCDF().addData("MLT_Kp6", mlt6);
+         System.out.println("L_Kp2");
+         ephm.getCDF().addData("L_Kp2", l2);
+         System.out.println("L_Kp6");
+         ephm.getCDF().addData("L_Kp6", l6);
+         System.out.println("FrameGroup");
+         ephm.getCDF().addData("FrameGroup", frameGroup);
+         System.out.println("Epoch");
+         ephm.getCDF().addData("Epoch", epoch);
+         System.out.println("Q");
+         ephm.getCDF().addData("Q", q);
+
+         ephm.close();
+      }
    }
    
    //write the misc file, no processing needed
@@ -299,34 +305,37 @@ public class LevelTwo extends CDFWriter{
       System.out.println("\nSaving MISC Level Two CDF...");
 
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-        pps_vals[rec_i] = CDF_Gen.data.pps[data_i];
-        version[rec_i] = CDF_Gen.data.ver[data_i];
-        payID[rec_i] = CDF_Gen.data.payID[data_i];
-        frameGroup[rec_i] = CDF_Gen.data.frame_1Hz[data_i];
-        epoch[rec_i] = CDF_Gen.data.epoch_1Hz[data_i];
-        q[rec_i] = CDF_Gen.data.pps_q[data_i];
+        pps_vals[rec_i] = data.pps[data_i];
+        version[rec_i] = data.ver[data_i];
+        payID[rec_i] = data.payID[data_i];
+        frameGroup[rec_i] = data.frame_1Hz[data_i];
+        epoch[rec_i] = data.epoch_1Hz[data_i];
+        q[rec_i] = data.pps_q[data_i];
       }
 
       String destName = 
          outputPath  + "/" + date + "/" + "bar_" + id + 
          "_l2_" + "misc" + "_20" + date +  "_v" + revNum + ".cdf";
      
-      Misc misc = new Misc(destName, "bar_" + id, date, 2);
-
-      System.out.println("GPS_PPS");
-      misc.getCDF().addData("GPS_PPS", pps_vals);
-      System.out.println("Version");
-      misc.getCDF().addData("Version", version);
-      System.out.println("Payload_ID");
-      misc.getCDF().addData("Payload_ID", payID);
-      System.out.println("FrameGroup");
-      misc.getCDF().addData("FrameGroup", frameGroup);
-      System.out.println("Epoch");
-      misc.getCDF().addData("Epoch", epoch);
-      System.out.println("Q");
-      misc.getCDF().addData("Q", q);
-
-      misc.close();
+      //the CDF library can only be used by one thread at a time
+      synchronized(CDF_LOCK){
+         Misc misc = new Misc(destName, "bar_" + id, date, 2);
+
+         System.out.println("GPS_PPS");
+         misc.getCDF().addData("GPS_PPS", pps_vals);
+         System.out.println("Version");
+         misc.getCDF().addData("Version", version);
+         System.out.println("Payload_ID");
+         misc.getCDF().addData("Payload_ID", payID);
+         System.out.println("FrameGroup");
+         misc.getCDF().addData("FrameGroup", frameGroup);
+         System.out.println("Epoch");
+         misc.getCDF().addData("Epoch", epoch);
+         System.out.println("Q");
+         misc.getCDF().addData("Q", q);
+
+         misc.close();
+      }
    }
    
    public void doMagCdf(int first, int last, int date) throws CDFException{
@@ -347,18 +356,18 @@ public class LevelTwo extends CDFWriter{
       //extract the nominal magnetometer value and calculate |B|
       float fill = CDFVar.getIstpVal("FLOAT_FILL").floatValue();
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         if(CDF_Gen.data.magx[data_i] != fill){
-            magx[rec_i] = (CDF_Gen.data.magx[data_i] - 8388608.0f) / 83886.070f;
+         if(data.magx[data_i] != fill){
+            magx[rec_i] = (data.magx[data_i] - 8388608.0f) / 83886.070f;
          }else{
             magx[rec_i] = fill;
          }
-         if(CDF_Gen.data.magy[data_i] != fill){
-            magy[rec_i] = (CDF_Gen.data.magy[data_i] - 8388608.0f) / 83886.070f;
+         if(data.magy[data_i] != fill){
+            magy[rec_i] = (data.magy[data_i] - 8388608.0f) / 83886.070f;
          }else{
             magx[rec_i] = fill;
          }
-         if(CDF_Gen.data.magz[data_i] != fill){
-            magz[rec_i] = (CDF_Gen.data.magz[data_i] - 8388608.0f) / 83886.070f;
+         if(data.magz[data_i] != fill){
+            magz[rec_i] = (data.magz[data_i] - 8388608.0f) / 83886.070f;
          }else{
             magx[rec_i] = fill;
          }
@@ -374,9 +383,9 @@ public class LevelTwo extends CDFWriter{
             magTot[rec_i] = fill;
          }
 
-         frameGroup[rec_i] = CDF_Gen.data.frame_4Hz[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_4Hz[data_i];
-         q[rec_i] = CDF_Gen.data.magn_q[data_i];
+         frameGroup[rec_i] = data.getFrame(Cadence.FOUR_HZ, data_i);
+         epoch[rec_i] = data.getEpoch(Cadence.FOUR_HZ, data_i);
+         q[rec_i] = data.magn_q[data_i];
       }
 
       //store the nominal mag values
@@ -384,23 +393,26 @@ public class LevelTwo extends CDFWriter{
          outputPath + "/" + date + "/" + "bar_" + id + 
          "_l2_" + "magn" + "_20" + date +  "_v" + revNum + ".cdf";
      
-      Magn magn = new Magn(destName, "bar_" + id, date, 2);
-      System.out.println("MAG_X");
-      magn.getCDF().addData("MAG_X", magx);
-      System.out.println("MAG_Y...");
-      magn.getCDF().addData("MAG_Y", magy);
-      System.out.println("MAG_Z...");
-      magn.getCDF().addData("MAG_Z", magz);
-      System.out.println("Total...");
-      magn.getCDF().addData("Total", magTot);
-      System.out.println("FrameGroup...");
-      magn.getCDF().addData("FrameGroup", frameGroup);
-      System.out.println("Epoch...");
-      magn.getCDF().addData("Epoch", epoch);
-      System.out.println("Q...");
-      magn.getCDF().addData("Q", q);
-
-      magn.close();
+      //the CDF library can only be used by one thread at a time
+      synchronized(CDF_LOCK){
+         Magn magn = new Magn(destName, "bar_" + id, date, 2);
+         System.out.println("MAG_X");
+         magn.getCDF().addData("MAG_X", magx);
+         System.out.println("MAG_Y...");
+         magn.getCDF().addData("MAG_Y", magy);
+         System.out.println("MAG_Z...");
+         magn.getCDF().addData("MAG_Z", magz);
+         System.out.println("Total...");
+         magn.getCDF().addData("Total", magTot);
+         System.out.println("FrameGroup...");
+         magn.getCDF().addData("FrameGroup", frameGroup);
+         System.out.println("Epoch...");
+         magn.getCDF().addData("Epoch", epoch);
+         System.out.println("Q...");
+         magn.getCDF().addData("Q", q);
+
+         magn.close();
+      }
    }
    
    public void doHkpgCdf(int first, int last, int date) throws CDFException{
@@ -424,86 +436,92 @@ public class LevelTwo extends CDFWriter{
          outputPath + "/" + date + "/" + "bar_" + id + 
          "_l2_" + "hkpg" + "_20" + date +  "_v" + revNum + ".cdf";
 
-      HKPG hkpg = new HKPG(destName, "bar_" + id, date, 2);
       float fill = CDFVar.getIstpVal("FLOAT_FILL").floatValue();
+      float[][] hkpg_scaled = new float[36][numOfRecs];
       
       for(int var_i = 0; var_i < 36; var_i++){
-         float[] hkpg_scaled = new float[numOfRecs];
-
          //get the appropriate values for the ADC data if needed
-         if(var_i == 19 && (CDF_Gen.data.getVersion() > 3)){
+         if(var_i == 19 && (data.getVersion() > 3)){
             for(int rec_i= 0, data_i= first; data_i < last; rec_i++, data_i++){
-               if(CDF_Gen.data.hkpg[var_i][data_i] != Constants.HKPG_FILL){
-                  hkpg_scaled[rec_i] = 
-                     ((CDF_Gen.data.hkpg[var_i][data_i] - 0x8000) * 0.09094f) - 
+               if(data.hkpg[var_i][data_i] != Constants.HKPG_FILL){
+                  hkpg_scaled[var_i][rec_i] = 
+                     ((data.hkpg[var_i][data_i] - 0x8000) * 0.09094f) - 
                      273.15f;
                }else{
-                  hkpg_scaled[rec_i] = fill;
+                  hkpg_scaled[var_i][rec_i] = fill;
                }
             }
-         }else if(var_i == 23 && (CDF_Gen.data.getVersion() > 3)){
+         }else if(var_i == 23 && (data.getVersion() > 3)){
             for(int rec_i= 0, data_i= first; data_i < last; rec_i++, data_i++){
-               if(CDF_Gen.data.hkpg[var_i][data_i] != Constants.HKPG_FILL){
-                  hkpg_scaled[rec_i] = 
-                     (CDF_Gen.data.hkpg[var_i][data_i] * 0.0003576f); 
+               if(data.hkpg[var_i][data_i] != Constants.HKPG_FILL){
+                  hkpg_scaled[var_i][rec_i] = 
+                     (data.hkpg[var_i][data_i] * 0.0003576f); 
                }else{
-                  hkpg_scaled[rec_i] = fill;
+                  hkpg_scaled[var_i][rec_i] = fill;
                }
             }
          }else{
             for(int rec_i= 0, data_i= first; data_i < last; rec_i++, data_i++){
-               if(CDF_Gen.data.hkpg[var_i][data_i] != Constants.HKPG_FILL){
-                  hkpg_scaled[rec_i] = 
+               if(data.hkpg[var_i][data_i] != Constants.HKPG_FILL){
+                  hkpg_scaled[var_i][rec_i] = 
                      (
-                        CDF_Gen.data.hkpg[var_i][data_i] * 
-                        CDF_Gen.data.hkpg_scale[var_i]
-                     ) + CDF_Gen.data.hkpg_offset[var_i];
+                        data.hkpg[var_i][data_i] * 
+                        data.hkpg_scale[var_i]
+                     ) + data.hkpg_offset[var_i];
                }else{
-                  hkpg_scaled[rec_i] = fill;
+                  hkpg_scaled[var_i][rec_i] = fill;
                }
             }
          }
-         
-
-         System.out.println(CDF_Gen.data.hkpg_label[var_i] + "...");
-         hkpg.getCDF().addData(CDF_Gen.data.hkpg_label[var_i], hkpg_scaled);
       }
 
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         sats[rec_i] = CDF_Gen.data.sats[data_i];
-         offset[rec_i] = CDF_Gen.data.offset[data_i];
-         termStat[rec_i] = CDF_Gen.data.termStat[data_i];
-         modemCnt[rec_i] = CDF_Gen.data.modemCnt[data_i];
-         dcdCnt[rec_i] = CDF_Gen.data.dcdCnt[data_i];
-         cmdCnt[rec_i] = CDF_Gen.data.cmdCnt[data_i];
-         frameGroup[rec_i] = CDF_Gen.data.frame_mod40[data_i];
-         weeks[rec_i] = CDF_Gen.data.weeks[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_mod40[data_i];
-         q[rec_i] = CDF_Gen.data.hkpg_q[data_i];
+         sats[rec_i] = data.sats[data_i];
+         offset[rec_i] = data.offset[data_i];
+         termStat[rec_i] = data.termStat[data_i];
+         modemCnt[rec_i] = data.modemCnt[data_i];
+         dcdCnt[rec_i] = data.dcdCnt[data_i];
+         cmdCnt[rec_i] = data.cmdCnt[data_i];
+         frameGroup[rec_i] = data.frame_mod40[data_i];
+         weeks[rec_i] = data.weeks[data_i];
+         epoch[rec_i] = data.epoch_mod40[data_i];
+         q[rec_i] = data.hkpg_q[data_i];
       }
 
-      System.out.println("numOfSats...");
-      hkpg.getCDF().addData("numOfSats", sats);
-      System.out.println("timeOffset...");
-      hkpg.getCDF().addData("timeOffset", offset);
-      System.out.println("termStatus...");
-      hkpg.getCDF().addData("termStatus", termStat);
-      System.out.println("cmdCounter...");
-      hkpg.getCDF().addData("cmdCounter", cmdCnt);
-      System.out.println("modemCounter...");
-      hkpg.getCDF().addData("modemCounter", modemCnt);
-      System.out.println("dcdCounter...");
-      hkpg.getCDF().addData("dcdCounter", dcdCnt);
-      System.out.println("weeks...");
-      hkpg.getCDF().addData("weeks", weeks);
-      System.out.println("FrameGroup...");
-      hkpg.getCDF().addData("FrameGroup", frameGroup);
-      System.out.println("Epoch...");
-      hkpg.getCDF().addData("Epoch", epoch);
-      System.out.println("Q...");
-      hkpg.getCDF().addData("Q", q);
-
-      hkpg.close();
+      //the CDF library can only be used by one thread at a time
+      synchronized(CDF_LOCK){
+         HKPG hkpg = new HKPG(destName, "bar_" + id, date, 2);
+
+         for(int var_i = 0; var_i < 36; var_i++){
+            System.out.println(data.hkpg_label[var_i] + "...");
+            hkpg.getCDF().addData(
+               data.hkpg_label[var_i], hkpg_scaled[var_i]
+            );
+         }
+
+         System.out.println("numOfSats...");
+         hkpg.getCDF().addData("numOfSats", sats);
+         System.out.println("timeOffset...");
+         hkpg.getCDF().addData("timeOffset", offset);
+         System.out.println("termStatus...");
+         hkpg.getCDF().addData("termStatus", termStat);
+         System.out.println("cmdCounter...");
+         hkpg.getCDF().addData("cmdCounter", cmdCnt);
+         System.out.println("modemCounter...");
+         hkpg.getCDF().addData("modemCounter", modemCnt);
+         System.out.println("dcdCounter...");
+         hkpg.getCDF().addData("dcdCounter", dcdCnt);
+         System.out.println("weeks...");
+         hkpg.getCDF().addData("weeks", weeks);
+         System.out.println("FrameGroup...");
+         hkpg.getCDF().addData("FrameGroup", frameGroup);
+         System.out.println("Epoch...");
+         hkpg.getCDF().addData("Epoch", epoch);
+         System.out.println("Q...");
+         hkpg.getCDF().addData("Q", q);
+
+         hkpg.close();
+      }
    }
 
    public void doFspcCdf(int first, int last, int date) throws CDFException{
@@ -522,7 +540,7 @@ public class LevelTwo extends CDFWriter{
       long[] epoch = new long[numOfRecs];
       float[] 
          old_edges, 
-         std_edges = SpectrumExtract.stdEdges(0, 2.4414f);
+         std_edges = SpectrumExtract.stdEdges(data, 0, 2.4414f);
 
       System.out.println("\nSaving FSPC...");
       
@@ -534,63 +552,63 @@ public class LevelTwo extends CDFWriter{
 
          //incremint sspc_rec if needed
          if(
-            (CDF_Gen.data.frame_20Hz[fspc_rec] - 
-            CDF_Gen.data.frame_20Hz[fspc_rec] % 32) != 
-            CDF_Gen.data.frame_mod32[sspc_rec]
+            (data.getFrame(Cadence.TWENTY_HZ, fspc_rec) - 
+            data.getFrame(Cadence.TWENTY_HZ, fspc_rec) % 32) != 
+            data.frame_mod32[sspc_rec]
          ){
             sspc_rec++;
          }
 
          //get the adjusted bin edges
          chan_edges[fspc_rec] = SpectrumExtract.createBinEdges(
-            0, CDF_Gen.data.peak511_bin[sspc_rec]
+            data, 0, data.peak511_bin[sspc_rec]
          );
 
          //write the spectrum to the new array
-         if(CDF_Gen.data.lc1[fspc_rec + first] != Constants.FSPC_RAW_FILL){
-            lc_scaled[0][fspc_rec] = CDF_Gen.data.lc1[fspc_rec + first];
+         if(data.lc1[fspc_rec + first] != Constants.FSPC_RAW_FILL){
+            lc_scaled[0][fspc_rec] = data.lc1[fspc_rec + first];
             lc_error[0][fspc_rec] = 
-              (float)Math.sqrt(CDF_Gen.data.lc1[fspc_rec + first]);
+              (float)Math.sqrt(data.lc1[fspc_rec + first]);
          }else{
             lc_scaled[0][fspc_rec] = int4_fill;
             lc_error[0][fspc_rec] = float_fill;
          }
-         if(CDF_Gen.data.lc2[fspc_rec + first] != Constants.FSPC_RAW_FILL){
-            lc_scaled[1][fspc_rec] = CDF_Gen.data.lc2[fspc_rec + first];
+         if(data.lc2[fspc_rec + first] != Constants.FSPC_RAW_FILL){
+            lc_scaled[1][fspc_rec] = data.lc2[fspc_rec + first];
             lc_error[1][fspc_rec] = 
-               (float)Math.sqrt(CDF_Gen.data.lc2[fspc_rec + first]);
+               (float)Math.sqrt(data.lc2[fspc_rec + first]);
          }else{
             lc_scaled[1][fspc_rec] = int4_fill;
             lc_error[1][fspc_rec] = float_fill;
          }
-         if(CDF_Gen.data.lc3[fspc_rec + first] != Constants.FSPC_RAW_FILL){
-            lc_scaled[2][fspc_rec] = CDF_Gen.data.lc3[fspc_rec + first];
+         if(data.lc3[fspc_rec + first] != Constants.FSPC_RAW_FILL){
+            lc_scaled[2][fspc_rec] = data.lc3[fspc_rec + first];
             lc_error[2][fspc_rec] = 
-               (float)Math.sqrt(CDF_Gen.data.lc3[fspc_rec + first]);
+               (float)Math.sqrt(data.lc3[fspc_rec + first]);
          }else{
             lc_scaled[2][fspc_rec] = int4_fill;
             lc_error[2][fspc_rec] = float_fill;
          }
-         if(CDF_Gen.data.lc4[fspc_rec + first] != Constants.FSPC_RAW_FILL){
-            lc_scaled[3][fspc_rec] = CDF_Gen.data.lc4[fspc_rec + first];
+         if(data.lc4[fspc_rec + first] != Constants.FSPC_RAW_FILL){
+            lc_scaled[3][fspc_rec] = data.lc4[fspc_rec + first];
             lc_error[3][fspc_rec] = 
-               (float)Math.sqrt(CDF_Gen.data.lc4[fspc_rec + first]);
+               (float)Math.sqrt(data.lc4[fspc_rec + first]);
          }else{
             lc_scaled[3][fspc_rec] = int4_fill;
             lc_error[3][fspc_rec] = float_fill;
          }
-         if(CDF_Gen.data.lc5[fspc_rec + first] != Constants.FSPC_RAW_FILL){
-            lc_scaled[4][fspc_rec] = CDF_Gen.data.lc5[fspc_rec + first];
+         if(data.lc5[fspc_rec + first] != Constants.FSPC_RAW_FILL){
+            lc_scaled[4][fspc_rec] = data.lc5[fspc_rec + first];
             lc_error[4][fspc_rec] = 
-               (float)Math.sqrt(CDF_Gen.data.lc5[fspc_rec + first]);
+               (float)Math.sqrt(data.lc5[fspc_rec + first]);
          }else{
             lc_scaled[4][fspc_rec] = int4_fill;
             lc_error[4][fspc_rec] = float_fill;
          }
-         if(CDF_Gen.data.lc6[fspc_rec + first] != Constants.FSPC_RAW_FILL){
-            lc_scaled[5][fspc_rec] = CDF_Gen.data.lc6[fspc_rec + first];
+         if(data.lc6[fspc_rec + first] != Constants.FSPC_RAW_FILL){
+            lc_scaled[5][fspc_rec] = data.lc6[fspc_rec + first];
             lc_error[5][fspc_rec] = 
-               (float)Math.sqrt(CDF_Gen.data.lc6[fspc_rec + first]);
+               (float)Math.sqrt(data.lc6[fspc_rec + first]);
          }else{
             lc_scaled[5][fspc_rec] = int4_fill;
             lc_error[5][fspc_rec] = float_fill;
@@ -598,66 +616,68 @@ public class LevelTwo extends CDFWriter{
       }
 
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         frameGroup[rec_i] = CDF_Gen.data.frame_20Hz[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_20Hz[data_i];
-         q[rec_i] = CDF_Gen.data.fspc_q[data_i];
+         frameGroup[rec_i] = data.getFrame(Cadence.TWENTY_HZ, data_i);
+         epoch[rec_i] = data.getEpoch(Cadence.TWENTY_HZ, data_i);
+         q[rec_i] = data.fspc_q[data_i];
       }
 
       String destName = 
          outputPath + "/" + date + "/" + "bar_" + id + 
          "_l2_" + "fspc" + "_20" + date +  "_v" + revNum + ".cdf";
 
-      FSPC fspc = 
-         new FSPC(destName, "bar_" + id, date, 2, CDF_Gen.data.getVersion());
-      if(CDF_Gen.data.getVersion() > 3){
-         System.out.println("FSPC1a");
-         fspc.getCDF().addData("FSPC1a", lc_scaled[0]);
-         fspc.getCDF().addData("cnt_error1a", lc_error[0]);
-         System.out.println("FSPC1b");
-         fspc.getCDF().addData("FSPC1b", lc_scaled[1]);
-         fspc.getCDF().addData("cnt_error1b", lc_error[1]);
-         System.out.println("FSPC1c");
-         fspc.getCDF().addData("FSPC1c", lc_scaled[2]);
-         fspc.getCDF().addData("cnt_error1c", lc_error[2]);
-         System.out.println("FSPC2");
-         fspc.getCDF().addData("FSPC2", lc_scaled[3]);
-         fspc.getCDF().addData("cnt_error2", lc_error[3]);
-         System.out.println("FSPC3");
-         fspc.getCDF().addData("FSPC3", lc_scaled[4]);
-         fspc.getCDF().addData("cnt_error3", lc_error[4]);
-         System.out.println("FSPC4");
-         fspc.getCDF().addData("FSPC4", lc_scaled[5]);
-         fspc.getCDF().addData("cnt_error4", lc_error[5]);
-      }else{
-         System.out.println("FSPC1");
-         fspc.getCDF().addData("FSPC1", lc_scaled[0]);
-         fspc.getCDF().addData("cnt_error1", lc_error[0]);
-         System.out.println("FSPC2");
-         fspc.getCDF().addData("FSPC2", lc_scaled[1]);
-         fspc.getCDF().addData("cnt_error2", lc_error[1]);
-         System.out.println("FSPC3");
-         fspc.getCDF().addData("FSPC3", lc_scaled[2]);
-         fspc.getCDF().addData("cnt_error3", lc_error[2]);
-         System.out.println("FSPC4");
-         fspc.getCDF().addData("FSPC4", lc_scaled[3]);
-         fspc.getCDF().addData("cnt_error4", lc_error[3]);
+      //the CDF library can only be used by one thread at a time
+      synchronized(CDF_LOCK){
+         FSPC fspc = new FSPC(
+            destName, "bar_" + id, date, 2, data.getVersion()
+         );
+         if(data.getVersion() > 3){
+            System.out.println("FSPC1a");
+            fspc.getCDF().addData("FSPC1a", lc_scaled[0]);
+            fspc.getCDF().addData("cnt_error1a", lc_error[0]);
+            System.out.println("FSPC1b");
+            fspc.getCDF().addData("FSPC1b", lc_scaled[1]);
+            fspc.getCDF().addData("cnt_error1b", lc_error[1]);
+            System.out.println("FSPC1c");
+            fspc.getCDF().addData("FSPC1c", lc_scaled[2]);
+            fspc.getCDF().addData("cnt_error1c", lc_error[2]);
+            System.out.println("FSPC2");
+            fspc.getCDF().addData("FSPC2", lc_scaled[3]);
+            fspc.getCDF().addData("cnt_error2", lc_error[3]);
+            System.out.println("FSPC3");
+            fspc.getCDF().addData("FSPC3", lc_scaled[4]);
+            fspc.getCDF().addData("cnt_error3", lc_error[4]);
+            System.out.println("FSPC4");
+            fspc.getCDF().addData("FSPC4", lc_scaled[5]);
+            fspc.getCDF().addData("cnt_error4", lc_error[5]);
+         }else{
+            System.out.println("FSPC1");
+            fspc.getCDF().addData("FSPC1", lc_scaled[0]);
+            fspc.getCDF().addData("cnt_error1", lc_error[0]);
+            System.out.println("FSPC2");
+            fspc.getCDF().addData("FSPC2", lc_scaled[1]);
+            fspc.getCDF().addData("cnt_error2", lc_error[1]);
+            System.out.println("FSPC3");
+            fspc.getCDF().addData("FSPC3", lc_scaled[2]);
+            fspc.getCDF().addData("cnt_error3", lc_error[2]);
+            System.out.println("FSPC4");
+            fspc.getCDF().addData("FSPC4", lc_scaled[3]);
+            fspc.getCDF().addData("cnt_error4", lc_error[3]);
+         }
+         System.out.println("FSPC_Edges");
+         fspc.getCDF().addData("FSPC_Edges", chan_edges);
+         System.out.println("FrameGroup");
+         fspc.getCDF().addData("FrameGroup", frameGroup);
+         System.out.println("Epoch");
+         fspc.getCDF().addData("Epoch", epoch);
+         System.out.println("Q");
+         fspc.getCDF().addData("Q", q);
+
+         fspc.close();
       }
-      System.out.println("FSPC_Edges");
-      fspc.getCDF().addData("FSPC_Edges", chan_edges);
-      System.out.println("FrameGroup");
-      fspc.getCDF().addData("FrameGroup", frameGroup);
-      System.out.println("Epoch");
-      fspc.getCDF().addData("Epoch", epoch);
-      System.out.println("Q");
-      fspc.getCDF().addData("Q", q);
-
-      fspc.close();
    }
 
    public void doMspcCdf(int first, int last, int date) throws CDFException{
-      float peak = -1, scint_temp = 0, dpu_temp = 0;
-      
-      int offset = 90;
+      float scint_temp = 0, dpu_temp = 0;
 
       int numOfRecs = last - first;
       int[] 
@@ -665,15 +685,15 @@ public class LevelTwo extends CDFWriter{
          q = new int[numOfRecs];
       long[] epoch = new long[numOfRecs];
 
-      float[][] 
-         mspc_rebin = new float[numOfRecs][48],
-         mspc_error = new float[numOfRecs][48];
       float[]
-         old_edges = new float[48],
-         std_edges = SpectrumExtract.stdEdges(1, 2.4414f);
-
-      
-      //rebin the mspc spectra
+         std_edges = SpectrumExtract.stdEdges(data, 1, 2.4414f),
+         xtal_temps = new float[numOfRecs],
+         dpu_temps = new float[numOfRecs],
+         peaks = new float[numOfRecs],
+         mspc_rebin = new float[numOfRecs * 48],
+         mspc_error = new float[numOfRecs * 48];
+
+      //find the temperatures and 511 peak to use for each spectrum
       for(
          int mspc_rec = 0, sspc_rec = 0, hkpg_rec = 0; 
          mspc_rec < numOfRecs; 
@@ -682,106 +702,93 @@ public class LevelTwo extends CDFWriter{
         
          //find correct hkpg_rec
          int target_frame = 
-            CDF_Gen.data.frame_mod4[mspc_rec] - 
-            (CDF_Gen.data.frame_mod4[mspc_rec] % 40);
+            data.frame_mod4[mspc_rec] - 
+            (data.frame_mod4[mspc_rec] % 40);
          while(
-            (CDF_Gen.data.frame_mod40[hkpg_rec] < target_frame) &&
+            (data.frame_mod40[hkpg_rec] < target_frame) &&
             (hkpg_rec < mspc_rec) &&
-            (hkpg_rec < CDF_Gen.data.frame_mod40.length)
+            (hkpg_rec < data.frame_mod40.length)
          ){
             hkpg_rec++;
          }
 
          //find correct sspc_rec
          target_frame = 
-            CDF_Gen.data.frame_mod4[mspc_rec + first] - 
-            (CDF_Gen.data.frame_mod4[mspc_rec + first] % 32);
+            data.frame_mod4[mspc_rec + first] - 
+            (data.frame_mod4[mspc_rec + first] % 32);
          while(
-            (CDF_Gen.data.frame_mod32[sspc_rec] < target_frame) &&
+            (data.frame_mod32[sspc_rec] < target_frame) &&
             (sspc_rec < mspc_rec + first) &&
-            (sspc_rec < CDF_Gen.data.frame_mod32.length)
+            (sspc_rec < data.frame_mod32.length)
          ){
             sspc_rec++;
          }
 
          //get temperatures
-         if(CDF_Gen.data.hkpg[Constants.T0][hkpg_rec] != Constants.HKPG_FILL){
+         if(data.hkpg[Constants.T0][hkpg_rec] != Constants.HKPG_FILL){
             scint_temp = 
-               (CDF_Gen.data.hkpg[Constants.T0][hkpg_rec] * 
-               CDF_Gen.data.hkpg_scale[Constants.T0]) + 
-               CDF_Gen.data.hkpg_offset[Constants.T0];
+               (data.hkpg[Constants.T0][hkpg_rec] * 
+               data.hkpg_scale[Constants.T0]) + 
+               data.hkpg_offset[Constants.T0];
          }
-         if(CDF_Gen.data.hkpg[Constants.T5][hkpg_rec] != Constants.HKPG_FILL){
+         if(data.hkpg[Constants.T5][hkpg_rec] != Constants.HKPG_FILL){
             dpu_temp = 
-               (CDF_Gen.data.hkpg[Constants.T5][hkpg_rec] * 
-               CDF_Gen.data.hkpg_scale[Constants.T5]) + 
-               CDF_Gen.data.hkpg_offset[Constants.T5];
+               (data.hkpg[Constants.T5][hkpg_rec] * 
+               data.hkpg_scale[Constants.T5]) + 
+               data.hkpg_offset[Constants.T5];
          }    
 
-         //get the adjusted bin edges
-         old_edges = 
-            SpectrumExtract.makeedges(
-               1, scint_temp, dpu_temp, CDF_Gen.data.peak511_bin[sspc_rec]
-            );
-
-         //rebin the spectrum
-         mspc_rebin[mspc_rec] = SpectrumExtract.rebin(
-            CDF_Gen.data.mspc[mspc_rec + first], old_edges, std_edges 
-         );
-
-         double fill = CDFVar.getIstpVal("DOUBLE_FILL").doubleValue();
-         for(int bin_i = 0; bin_i < mspc_rebin[mspc_rec].length; bin_i++){
-            if(mspc_rebin[mspc_rec][bin_i] != fill){
-               float width = std_edges[bin_i + 1] - std_edges[bin_i];
-
-               //get the count error
-               mspc_error[mspc_rec][bin_i] = 
-                  (float)Math.sqrt(mspc_rebin[mspc_rec][bin_i])
-                  / (width * 4f);
-
-               //divide counts by bin width and adjust the time scale
-               mspc_rebin[mspc_rec][bin_i] /= (width * 4f);
-            }
-         }
+         xtal_temps[mspc_rec] = scint_temp;
+         dpu_temps[mspc_rec] = dpu_temp;
+         peaks[mspc_rec] = data.peak511_bin[sspc_rec];
       }
 
+      //rebin the mspc spectra
+      SpectrumExtract.calibrate(
+         data, 1, data.mspc, first, xtal_temps, dpu_temps, peaks, 
+         std_edges, 4f, mspc_rebin, mspc_error
+      );
+
       System.out.println("\nSaving MSPC...");
 
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         frameGroup[rec_i] = CDF_Gen.data.frame_mod4[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_mod4[data_i];
-         q[rec_i] = CDF_Gen.data.mspc_q[data_i];
+         frameGroup[rec_i] = data.frame_mod4[data_i];
+         epoch[rec_i] = data.epoch_mod4[data_i];
+         q[rec_i] = data.mspc_q[data_i];
       }
 
       String destName = 
          outputPath + "/" + date + "/" + "bar_" + id +
          "_l2_" + "mspc" + "_20" + date +  "_v" + revNum + ".cdf";
 
-      MSPC mspc = new MSPC(destName, "bar_" + id, date, 2);
-      System.out.println("mspc");
-      mspc.getCDF().addData("MSPC", mspc_rebin);
-      System.out.println("mspc error");
-      mspc.getCDF().addData("cnt_error", mspc_error);
-      System.out.println("FrameGroup");
-      mspc.getCDF().addData("FrameGroup", frameGroup);
-      System.out.println("Epoch");
-      mspc.getCDF().addData("Epoch", epoch);
-      System.out.println("Q");
-      mspc.getCDF().addData("Q", q);
-
-      mspc.close();
+      //the CDF library can only be used by one thread at a time
+      synchronized(CDF_LOCK){
+         MSPC mspc = new MSPC(destName, "bar_" + id, date, 2);
+         System.out.println("mspc");
+         mspc.getCDF().addData("MSPC", toRows(mspc_rebin, 48));
+         System.out.println("mspc error");
+         mspc.getCDF().addData("cnt_error", toRows(mspc_error, 48));
+         System.out.println("FrameGroup");
+         mspc.getCDF().addData("FrameGroup", frameGroup);
+         System.out.println("Epoch");
+         mspc.getCDF().addData("Epoch", epoch);
+         System.out.println("Q");
+         mspc.getCDF().addData("Q", q);
+
+         mspc.close();
+      }
    }
 
    public void doSspcCdf(int first, int last, int date) throws CDFException{
       float scint_temp = 0, dpu_temp = 0;
 
       int numOfRecs = last - first;
-      float[][] 
-         sspc_rebin = new float[numOfRecs][256],
-         sspc_error = new float[numOfRecs][256];
       float[] 
-         old_edges, 
-         std_edges = SpectrumExtract.stdEdges(2, 2.4414f);
+         std_edges = SpectrumExtract.stdEdges(data, 2, 2.4414f),
+         xtal_temps = new float[numOfRecs],
+         dpu_temps = new float[numOfRecs],
+         sspc_rebin = new float[numOfRecs * 256],
+         sspc_error = new float[numOfRecs * 256];
       
       float[] peak = new float[numOfRecs];
       int[] 
@@ -791,89 +798,76 @@ public class LevelTwo extends CDFWriter{
 
       System.out.println("\nSaving SSPC...");
 
-      //rebin the sspc spectra
+      //find the temperatures to use for each spectrum
       for(int sspc_rec = 0, hkpg_rec = 0; sspc_rec < numOfRecs; sspc_rec++){
          
          //find correct hkpg_rec
          int target_frame = 
-            CDF_Gen.data.frame_mod32[sspc_rec] - 
-            (CDF_Gen.data.frame_mod32[sspc_rec] % 40);
+            data.frame_mod32[sspc_rec] - 
+            (data.frame_mod32[sspc_rec] % 40);
 
          while(
-            (CDF_Gen.data.frame_mod40[hkpg_rec] <= target_frame) &&
+            (data.frame_mod40[hkpg_rec] <= target_frame) &&
             (hkpg_rec <= sspc_rec) &&
-            (hkpg_rec < CDF_Gen.data.frame_mod40.length)
+            (hkpg_rec < data.frame_mod40.length)
          ){
             hkpg_rec++;
          }
 
          //get temperatures
-         if(CDF_Gen.data.hkpg[Constants.T0][hkpg_rec] != Constants.HKPG_FILL){
+         if(data.hkpg[Constants.T0][hkpg_rec] != Constants.HKPG_FILL){
             scint_temp = 
-               (CDF_Gen.data.hkpg[Constants.T0][hkpg_rec] * 
-               CDF_Gen.data.hkpg_scale[Constants.T0]) + 
-               CDF_Gen.data.hkpg_offset[Constants.T0];
+               (data.hkpg[Constants.T0][hkpg_rec] * 
+               data.hkpg_scale[Constants.T0]) + 
+               data.hkpg_offset[Constants.T0];
          }
-         if(CDF_Gen.data.hkpg[Constants.T5][hkpg_rec] != Constants.HKPG_FILL){
+         if(data.hkpg[Constants.T5][hkpg_rec] != Constants.HKPG_FILL){
             dpu_temp = 
-               (CDF_Gen.data.hkpg[Constants.T5][hkpg_rec] * 
-               CDF_Gen.data.hkpg_scale[Constants.T5]) + 
-               CDF_Gen.data.hkpg_offset[Constants.T5];
+               (data.hkpg[Constants.T5][hkpg_rec] * 
+               data.hkpg_scale[Constants.T5]) + 
+               data.hkpg_offset[Constants.T5];
          }    
 
-         //get the adjusted bin edges
-         old_edges = 
-            SpectrumExtract.makeedges(
-               2, scint_temp, dpu_temp, CDF_Gen.data.peak511_bin[sspc_rec + first]
-            );
-
-         //rebin the spectrum
-         sspc_rebin[sspc_rec] = SpectrumExtract.rebin(
-            CDF_Gen.data.sspc[sspc_rec + first], old_edges, std_edges
-         );
-
-         float fill = CDFVar.getIstpVal("FLOAT_FILL").floatValue();
-         for(int bin_i = 0; bin_i < sspc_rebin[sspc_rec].length; bin_i++){
-            if(sspc_rebin[sspc_rec][bin_i] != fill){
-               float width = std_edges[bin_i + 1] - std_edges[bin_i];
-               //get the count error
-               sspc_error[sspc_rec][bin_i] =
-                  (float)Math.sqrt(sspc_rebin[sspc_rec][bin_i])
-                  / (width * 32f);
-
-               //divide counts by bin width and adjust the time scale
-               sspc_rebin[sspc_rec][bin_i] /= (width * 32f);
-            }
-         }
+         xtal_temps[sspc_rec] = scint_temp;
+         dpu_temps[sspc_rec] = dpu_temp;
       }
 
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         peak[rec_i] = CDF_Gen.data.peak511_bin[data_i];
-         frameGroup[rec_i] = CDF_Gen.data.frame_mod32[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_mod32[data_i];
-         q[rec_i] = CDF_Gen.data.sspc_q[data_i];
+         peak[rec_i] = data.peak511_bin[data_i];
+         frameGroup[rec_i] = data.frame_mod32[data_i];
+         epoch[rec_i] = data.epoch_mod32[data_i];
+         q[rec_i] = data.sspc_q[data_i];
       }
 
+      //rebin the sspc spectra
+      SpectrumExtract.calibrate(
+         data, 2, data.sspc, first, xtal_temps, dpu_temps, peak, 
+         std_edges, 32f, sspc_rebin, sspc_error
+      );
+
       String destName = 
          outputPath + "/" + date + "/" + "bar_" + id + 
          "_l2_" + "sspc" + "_20" + date +  "_v" + revNum + ".cdf";
 
-      SSPC sspc = new SSPC(destName, "bar_" + id, date, 2);
-
-      System.out.println("sspc");
-      sspc.getCDF().addData("SSPC", sspc_rebin);
-      System.out.println("sspc error");
-      sspc.getCDF().addData("cnt_error", sspc_error);
-      System.out.println("Peak_511");
-      sspc.getCDF().addData("Peak_511", peak);
-      System.out.println("FrameGroup");
-      sspc.getCDF().addData("FrameGroup", frameGroup);
-      System.out.println("Epoch");
-      sspc.getCDF().addData("Epoch", epoch);
-      System.out.println("Q");
-      sspc.getCDF().addData("Q", q);
-
-      sspc.close();
+      //the CDF library can only be used by one thread at a time
+      synchronized(CDF_LOCK){
+         SSPC sspc = new SSPC(destName, "bar_" + id, date, 2);
+
+         System.out.println("sspc");
+         sspc.getCDF().addData("SSPC", toRows(sspc_rebin, 256));
+         System.out.println("sspc error");
+         sspc.getCDF().addData("cnt_error", toRows(sspc_error, 256));
+         System.out.println("Peak_511");
+         sspc.getCDF().addData("Peak_511", peak);
+         System.out.println("FrameGroup");
+         sspc.getCDF().addData("FrameGroup", frameGroup);
+         System.out.println("Epoch");
+         sspc.getCDF().addData("Epoch", epoch);
+         System.out.println("Q");
+         sspc.getCDF().addData("Q", q);
+
+         sspc.close();
+      }
    }
 
    public void doRcntCdf(int first, int last, int date) throws CDFException{
@@ -888,9 +882,9 @@ public class LevelTwo extends CDFWriter{
       float fill = CDFVar.getIstpVal("FLOAT_FILL").floatValue();
       for(int var_i = 0; var_i < 4; var_i++){
          for(int rec_i = 0; rec_i < numOfRecs; rec_i++){
-            if(CDF_Gen.data.rcnt[var_i][rec_i + first] != Constants.FLOAT_FILL){
+            if(data.rcnt[var_i][rec_i + first] != Constants.FLOAT_FILL){
                rc_timeScaled[var_i][rec_i] = 
-                  CDF_Gen.data.rcnt[var_i][rec_i + first] / 4;
+                  data.rcnt[var_i][rec_i + first] / 4;
             }else{
                rc_timeScaled[var_i][rec_i] = fill;
             }
@@ -898,9 +892,9 @@ public class LevelTwo extends CDFWriter{
       }
 
       for(int rec_i = 0, data_i = first; data_i < last; rec_i++, data_i++){
-         frameGroup[rec_i] = CDF_Gen.data.frame_mod4[data_i];
-         epoch[rec_i] = CDF_Gen.data.epoch_mod4[data_i];
-         q[rec_i] = CDF_Gen.data.rcnt_q[data_i];
+         frameGroup[rec_i] = data.frame_mod4[data_i];
+         epoch[rec_i] = data.epoch_mod4[data_i];
+         q[rec_i] = data.rcnt_q[data_i];
       }
          
       System.out.println("\nSaving RCNT...");
@@ -908,23 +902,37 @@ public class LevelTwo extends CDFWriter{
       String destName = 
          outputPath + "/" + date + "/"  + "bar_" + id +
          "_l2_" + "rcnt" + "_20" + date +  "_v" + revNum + ".cdf";
-       DataProduct rcnt = new Rcnt(destName, "bar_" + id, date, 2);
-
-      System.out.println("Interrupt");
-      rcnt.getCDF().addData("Interrupt", rc_timeScaled[0]);
-      System.out.println("LowLevel");
-      rcnt.getCDF().addData("LowLevel", rc_timeScaled[1]);
-      System.out.println("HighLevel");
-      rcnt.getCDF().addData("HighLevel", rc_timeScaled[3]);
-      System.out.println("PeakDet");
-      rcnt.getCDF().addData("PeakDet", rc_timeScaled[2]);
-      System.out.println("FrameGroup");
-      rcnt.getCDF().addData("FrameGroup", frameGroup);
-      System.out.println("Epoch");
-      rcnt.getCDF().addData("Epoch", epoch);
-      System.out.println("Q");
-      rcnt.getCDF().addData("Q", q);
-
-      rcnt.close();
+
+      //the CDF library can only be used by one thread at a time
+      synchronized(CDF_LOCK){
+         DataProduct rcnt = new Rcnt(destName, "bar_" + id, date, 2);
+
+         System.out.println("Interrupt");
+         rcnt.getCDF().addData("Interrupt", rc_timeScaled[0]);
+         System.out.println("LowLevel");
+         rcnt.getCDF().addData("LowLevel", rc_timeScaled[1]);
+         System.out.println("HighLevel");
+         rcnt.getCDF().addData("HighLevel", rc_timeScaled[3]);
+         System.out.println("PeakDet");
+         rcnt.getCDF().addData("PeakDet", rc_timeScaled[2]);
+         System.out.println("FrameGroup");
+         rcnt.getCDF().addData("FrameGroup", frameGroup);
+         System.out.println("Epoch");
+         rcnt.getCDF().addData("Epoch", epoch);
+         System.out.println("Q");
+         rcnt.getCDF().addData("Q", q);
+
+         rcnt.close();
+      }
+   }
+
+   //splits a block of records stored one after another into one row each
+   private static float[][] toRows(float[] flat, int cols){
+      float[][] rows = new float[flat.length / cols][];
+      for(int row_i = 0; row_i < rows.length; row_i++){
+         rows[row_i] = 
+            Arrays.copyOfRange(flat, row_i * cols, (row_i + 1) * cols);
+      }
+      return rows;
    }
- }
+}
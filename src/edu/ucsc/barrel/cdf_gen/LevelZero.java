@@ -2,8 +2,12 @@
 LevelZero.java
 
 Description:
-   Copies each data file, byte by byte, to a day-long data file.
-   Rejects short frames, long frames, and frames with bad checksums.
+   Copies each data file, frame by frame, to a day-long data file.
+   Rejects short frames and frames with bad checksums.
+   Input files are memory mapped and searched for frames in parallel, then
+   the frames are merged back together in frame counter order.
+   A FrameIndex is saved next to the day-long file so it can be loaded again
+   without decoding the frames a second time.
 
    ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
    This file is part of The BARREL CDF Generator.
@@ -25,13 +29,24 @@ Description:
 
 package edu.ucsc.barrel.cdf_gen;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class LevelZero{
    
@@ -45,6 +60,21 @@ public class LevelZero{
    private String revNum;
    private OutputStream outFile;
    private int dpu_id;
+   private FrameDecoder decoder;
+   private FrameView view = new FrameView();
+   private DataHolder data;
+
+   //frames already written, and how many repeats were dropped
+   private DuplicateFilter seen = new DuplicateFilter();
+   private int totalDuplicates = 0;
+
+   //total bytes read from the input files
+   private long byteCount = 0;
+   private byte[] frame;
+
+   //index of the frames written to the output file, and its length so far
+   private FrameIndex index;
+   private long written = 0;
    
    public LevelZero(
       DataHolder data,
@@ -59,11 +89,13 @@ public class LevelZero{
 		final String d
    ){
 	   //set object properties
+      this.data = data;
       syncWord = sync;
       frameLength = length;
       inputPath = inputDir;
       outputPath = outputDir;
       dpu_id = Integer.parseInt(dpu);
+      decoder = new FrameDecoder(frameLength, syncWord);
 
 		//get file revision number
       if(CDF_Gen.getSetting("rev") != null){
@@ -85,151 +117,404 @@ public class LevelZero{
 			"_l0_20" + d +  "_v" + revNum + ".tlm";
    }
    
+   //The good frames found in one input file. The file stays mapped until
+   //its frames have been written out.
+   private static class ScannedFile{
+      String name;
+      int index;//place in the sorted list of input files
+      MappedByteBuffer buf;
+      int[] starts = new int[64];
+      int[] fcs = new int[64];
+      int count = 0, next = 0;
+      int badChecksums, shortFrames, duplicates;
+
+      void add(final int start, final int fc){
+         if(count == starts.length){
+            starts = Arrays.copyOf(starts, count * 2);
+            fcs = Arrays.copyOf(fcs, count * 2);
+         }
+         starts[count] = start;
+         fcs[count] = fc;
+         count++;
+      }
+   }
+
+   //decode every file in the input directory
    public void processRawFiles() throws IOException{
-      FileInputStream readFile;
-      byte[] bytes;
-      StringBuilder hexBuffer;
-      
-      //keeps track of how many total bytes are transfered
-      long byteCount = 0;
+      open();
       
-      //index list of decimal to hex values
-      String[] hexSymbols = { 
-         "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", 
-         "A", "B", "C", "D", "E", "F" 
-      };
-      
-      //create output file
-      System.out.println("Generating day-long file...");
-      outFile = new FileOutputStream(outputPath + "/" + outName);
-      
-      //convert each input file to a string, 
-      // check it for errors, and save good frames
+      //ignore the manifest file and any unfinished downloads
+      final List<File> inputs = new ArrayList<File>();
       for(String file_i : fileList){
-         if(!(file_i.equals("dailyManifest"))){ //ignore the manifest file
-            //create new buffers to create hex string with
-            bytes = new byte[fileList.length];
-            hexBuffer = new StringBuilder(bytes.length * 2);
-            
-            readFile = new FileInputStream(new File(inputPath + "/" + file_i));
-            
-            for(int value = 0 ; value != -1; value = readFile.read(bytes)){
-               //increment byte counter
-               byteCount += value;
-               
-               //for each byte in the buffer, convert to nybbles and lookup hex
-               for(int i = 0; i < value; i++){
-                  byte leftSymbol = (byte)((bytes[i] >>> 4) & 0x0f);
-                  byte rightSymbol = (byte)(bytes[i] & 0x0f);
-                  
-                  //create a string of all hex values in this buffer-
-                  hexBuffer.append(
-                     hexSymbols[leftSymbol] + hexSymbols[rightSymbol]
-                  );
-               }
+         if(
+            !file_i.equals("dailyManifest") && 
+            !file_i.endsWith(DataCollector.PART_SUFFIX)
+         ){
+            inputs.add(new File(inputPath + "/" + file_i));
+         }
+      }
+
+      //find the good frames in each file, several files at a time
+      int threads = Runtime.getRuntime().availableProcessors();
+      if(!CDF_Gen.getSetting("read_threads").equals("")){
+         threads = Integer.parseInt(CDF_Gen.getSetting("read_threads"));
+      }
+      threads = Math.max(1, Math.min(threads, inputs.size()));
+
+      ScannedFile[] scanned = new ScannedFile[inputs.size()];
+      if(threads == 1){
+         for(int file_i = 0; file_i < scanned.length; file_i++){
+            scanned[file_i] = scan(inputs.get(file_i), decoder);
+         }
+      }else{
+         ExecutorService pool = Executors.newFixedThreadPool(threads);
+         try{
+            List<Future<ScannedFile>> results = 
+               new ArrayList<Future<ScannedFile>>();
+            for(final File file_i : inputs){
+               results.add(pool.submit(new Callable<ScannedFile>(){
+                  public ScannedFile call() throws IOException{
+                     return scan(
+                        file_i, new FrameDecoder(frameLength, syncWord)
+                     );
+                  }
+               }));
+            }
+            for(int file_i = 0; file_i < scanned.length; file_i++){
+               scanned[file_i] = results.get(file_i).get();
             }
-            
-            //Process the hex frames
-            splitFrames(hexBuffer.toString(), file_i);
-            
-            if (readFile != null) {
-               readFile.close();  
-            }   
+         }catch(ExecutionException ex){
+            if(ex.getCause() instanceof IOException){
+               throw (IOException)ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+         }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading input files");
+         }finally{
+            pool.shutdown();
          }
       }
-      
-      System.out.println("Tranfered " + byteCount + " bytes to " + outName);
+
+      for(int file_i = 0; file_i < scanned.length; file_i++){
+         scanned[file_i].index = file_i;
+      }
+      merge(scanned);
+
+      for(ScannedFile file_i : scanned){
+         fileReport(file_i);
+      }
+      report();
    }
-   
-   private void splitFrames(String hexBuff, String file) throws IOException{
-      //need to work on salvaging partial frames due to buffer misalignment 
-      //and syncwords in the data
-      
-      String[] frames;
-      
-      frames = hexBuff.split(syncWord);
-      
-      for(int frame_i = 0; frame_i < frames.length; frame_i++){
-         
-         //make sure we have something to work with
-         if(frames[frame_i].length() == 0){continue;}
-         
-         //add sync word back into the frame
-         frames[frame_i] = syncWord + frames[frame_i];
-         
-         //find any extra or shortage in frame length
-         //Multiply by 2 because hex format gives 1 char per nybble
-         int diff = frames[frame_i].length() - (frameLength * 2);
-         
-         //Make sure the frame length is correct
-         if(diff == 0){
-            processFrame(frames[frame_i], file);
-         }else if(diff < 0){ //frame is too short
-            //Try to build a full length frame from adjacent pieces
-            String tempFrame = frames[frame_i];
-            int frame_j = frame_i;
-            
-            while(
-                  ((frame_j + 1) < frames.length) && 
-                  (tempFrame.length() < (frameLength *2)) 
-               
-            ){
-               frame_j++;
-               tempFrame = tempFrame + syncWord + frames[frame_j];
-            }
-            
-            if(tempFrame.length() == (frameLength * 2)){
-               frame_i = frame_j;
-               processFrame(tempFrame, file);
-            }else{
-               System.out.println("Short Frame in file " + file + ".");
+
+   //Decode files as they are downloaded. Files are taken from the queue in
+   //order, each one as soon as its download finishes, so frames are decoded
+   //while the rest of the files are still arriving.
+   public void processStream(DataCollector.Stream downloads)
+      throws IOException
+   {
+      boolean done = false;
+
+      try{
+         open();
+         for(
+            DataCollector.Download file_i = downloads.take(); 
+            !file_i.isEnd(); 
+            file_i = downloads.take()
+         ){
+            File rawFile = file_i.await();
+            if(rawFile != null){processFile(rawFile);}
+         }
+         done = true;
+      }catch(InterruptedException ex){
+         Thread.currentThread().interrupt();
+         throw new IOException("Interrupted while waiting for downloads");
+      }finally{
+         downloads.cancel();
+
+         //don't leave a half written file open, the error that got us
+         //here is the one worth reporting
+         if(!done && outFile != null){
+            try{outFile.close();}catch(IOException ex){}
+            outFile = null;
+         }
+      }
+
+      report();
+   }
+
+   private void open() throws IOException{
+      byteCount = 0;
+      totalDuplicates = 0;
+      index = new FrameIndex(frameLength);
+      written = 0;
+
+      //create output file
+      System.out.println("Generating day-long file...");
+      outFile = new BufferedOutputStream(
+         new FileOutputStream(outputPath + "/" + outName)
+      );
+      frame = new byte[frameLength];
+   }
+
+   //Maps a file into memory and finds each good frame in it. Each thread
+   //needs its own decoder because the decoder keeps count of bad frames.
+   private ScannedFile scan(final File rawFile, final FrameDecoder dec)
+      throws IOException
+   {
+      ScannedFile file = new ScannedFile();
+      FileChannel channel = FileChannel.open(
+         rawFile.toPath(), StandardOpenOption.READ
+      );
+      try{
+         if(channel.size() > Integer.MAX_VALUE){
+            throw new IOException(rawFile.getName() + " is too large to read.");
+         }
+         file.buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }finally{
+         channel.close();
+      }
+      file.name = rawFile.getName();
+
+      dec.resetCounts();
+      for(
+         int frame_i = dec.next(file.buf, 0); 
+         frame_i != -1; 
+         frame_i = dec.next(file.buf, frame_i + frameLength)
+      ){
+         file.add(
+            frame_i,
+            (int)dec.bits(
+               file.buf, frame_i,
+               FrameLayout.FRAME_COUNTER.offset, 
+               FrameLayout.FRAME_COUNTER.width
+            )
+         );
+      }
+      file.badChecksums = dec.getBadChecksums();
+      file.shortFrames = dec.getShortFrames();
+
+      return file;
+   }
+
+   //reads a single input file, checks it for errors, and saves good frames
+   private void processFile(File rawFile) throws IOException{
+      ScannedFile file = scan(rawFile, decoder);
+      for(; file.next < file.count; file.next++){
+         writeFrame(file);
+      }
+      fileReport(file);
+   }
+
+   //Writes the frames of every file in frame counter order. Frames inside
+   //a file keep their order, and when two files hold the same frame counter
+   //the earlier file goes first so it is the copy that is kept.
+   private void merge(final ScannedFile[] files) throws IOException{
+      //counters from before a rollover sort ahead of those after it
+      int first_fc = -1;
+      for(ScannedFile file_i : files){
+         if(file_i.count > 0){
+            first_fc = file_i.fcs[0];
+            break;
+         }
+      }
+      final int ref_fc = first_fc;
+
+      PriorityQueue<ScannedFile> heads = new PriorityQueue<ScannedFile>(
+         Math.max(1, files.length),
+         new Comparator<ScannedFile>(){
+            public int compare(ScannedFile a, ScannedFile b){
+               long 
+                  a_fc = unwrap(a.fcs[a.next], ref_fc),
+                  b_fc = unwrap(b.fcs[b.next], ref_fc);
+               if(a_fc != b_fc){return a_fc < b_fc ? -1 : 1;}
+               return a.index - b.index;
             }
-         }else if(diff > 0){//frame is too long
-            //Long frames wont be saved so move on
-            System.out.println("Long Frame in file " + file + ".");
          }
+      );
+      for(ScannedFile file_i : files){
+         if(file_i.count > 0){heads.add(file_i);}
+      }
+
+      while(!heads.isEmpty()){
+         ScannedFile file = heads.poll();
+         writeFrame(file);
+         file.next++;
+         if(file.next < file.count){heads.add(file);}
+      }
+   }
+
+   private static long unwrap(final int fc, final int ref_fc){
+      if((ref_fc - fc) > Constants.LAST_DAY_FC){
+         return (long)fc + Constants.FC_OFFSET;
+      }
+      return fc;
+   }
+
+   //copies the next frame out of a mapped file and processes it
+   private void writeFrame(final ScannedFile file) throws IOException{
+      decoder.copyFrame(file.buf, file.starts[file.next], frame);
+      if(!processFrame(frame)){file.duplicates++;}
+   }
+
+   private void fileReport(final ScannedFile file){
+      byteCount += file.buf.limit();
+
+      if(file.badChecksums > 0){
+         System.out.println(
+            "Checksum Failed for " + file.badChecksums + 
+            " frames in " + file.name + "!"
+         );
+      }
+      if(file.shortFrames > 0){
+         System.out.println("Short Frame in file " + file.name + ".");
+      }
+      if(file.duplicates > 0){
+         System.out.println(
+            "Dropped " + file.duplicates + " duplicate frames from " + 
+            file.name + "."
+         );
+         totalDuplicates += file.duplicates;
+      }
+   }
+
+   private void report(){
+      System.out.println("Tranfered " + byteCount + " bytes to " + outName);
+      if(totalDuplicates > 0){
+         System.out.println(
+            "Dropped " + totalDuplicates + " duplicate frames in total."
+         );
       }
    }
    
-   private void processFrame(String frame, String fileName) throws IOException{
-      BigInteger binFrame = new BigInteger(frame, 16);
-      
-      //check that checksum
-      int sum = 0;
+   //returns false if the frame was a repeat and was dropped
+   private boolean processFrame(byte[] frame) throws IOException{
+      view.wrap(frame);
+
+      //the same frame can arrive from more than one server
+      if(!seen.add(view)){return false;}
+
+      //write to level zero file
+      outFile.write(frame);
       
-      int cksm = Integer.parseInt(
-         frame.substring((frame.length() - 4), frame.length()), 16
+      //add frame to data object and note what happened to it in the index
+      int flags = data.addFrame(view, dpu_id);
+      index.add(
+         (int)view.bits(
+            FrameLayout.FRAME_COUNTER.offset, FrameLayout.FRAME_COUNTER.width
+         ),
+         written, flags
       );
-      for(int word_i = 0; word_i < (frame.length() - 4); word_i += 4){
-         sum += Integer.parseInt(frame.substring(word_i, (word_i + 4)), 16);
-      }
-      if(cksm == (0xffff & sum)){ 
-         //checksum passed!
-         //write to level zero file
-         outFile.write(hexToByte(frame));
-         
-         //add frame to data object
-         CDF_Gen.data.addFrame(binFrame, dpu_id);
-      }else{
-         System.out.println("Checksum Failed for frame in  " + fileName + "!");
+      written += frame.length;
+
+      return true;
+   }
+
+   //Fills the DataHolder from a level zero file that has a saved index.
+   //The frames were checked when the file was made, so they are handed 
+   //straight to the DataHolder without searching for sync words or checking
+   //checksums. Returns false, without adding anything, if the index is 
+   //missing or does not match the file.
+   public boolean loadIndexed(final File l0File) throws IOException{
+      FrameIndex saved = FrameIndex.read(FrameIndex.fileFor(l0File));
+      if(saved == null || saved.getFrameLength() != frameLength){
+         return false;
+      }
+
+      FileChannel channel = FileChannel.open(
+         l0File.toPath(), StandardOpenOption.READ
+      );
+      MappedByteBuffer buf;
+      try{
+         if(channel.size() > Integer.MAX_VALUE){return false;}
+         buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }finally{
+         channel.close();
+      }
+
+      //make sure every indexed frame is where the index says it is
+      for(int frame_i = 0; frame_i < saved.size(); frame_i++){
+         long start = saved.getOffset(frame_i);
+         if(
+            start < 0 || start + frameLength > buf.limit() ||
+            decoder.bits(
+               buf, (int)start,
+               FrameLayout.FRAME_COUNTER.offset, 
+               FrameLayout.FRAME_COUNTER.width
+            ) != saved.getFC(frame_i)
+         ){
+            System.out.println(
+               "Index does not match " + l0File.getName() + ", rereading it."
+            );
+            return false;
+         }
+      }
+
+      //count the frames the DataHolder treats differently than it did when
+      //the index was made
+      int changed = 0;
+      frame = new byte[frameLength];
+      for(int frame_i = 0; frame_i < saved.size(); frame_i++){
+         decoder.copyFrame(buf, (int)saved.getOffset(frame_i), frame);
+         int flags = data.addFrame(view.wrap(frame), dpu_id);
+         if(flags != saved.getFlags(frame_i)){changed++;}
+      }
+
+      System.out.println(
+         "Loaded " + saved.size() + " indexed frames from " + l0File.getName()
+      );
+      if(changed > 0){
+         System.out.println(
+            changed + " frames were gated differently than when the file " +
+            "was made, min_alt may have changed."
+         );
       }
+      return true;
    }
    
-   private static byte[] hexToByte(String s) {
-      int len = s.length();
-      byte[] bytes = new byte[len / 2];
-      for (int i = 0; i < len; i += 2) {
-          bytes[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4)
-                               + Character.digit(s.charAt(i+1), 16));
+   //Fills the DataHolder from an existing level zero file instead of the 
+   //raw telemetry files. The saved index is used if there is one, otherwise
+   //the file is searched for frames and an index is saved for next time.
+   public void readL0(final File l0File) throws IOException{
+      if(loadIndexed(l0File)){return;}
+
+      FrameIndex made = new FrameIndex(frameLength);
+      ScannedFile file = scan(l0File, decoder);
+      frame = new byte[frameLength];
+      for(; file.next < file.count; file.next++){
+         int start = file.starts[file.next];
+         decoder.copyFrame(file.buf, start, frame);
+         view.wrap(frame);
+
+         //files made before duplicates were dropped may still have some
+         if(!seen.add(view)){
+            file.duplicates++;
+            continue;
+         }
+
+         made.add(file.fcs[file.next], start, data.addFrame(view, dpu_id));
+      }
+      fileReport(file);
+
+      try{
+         made.write(FrameIndex.fileFor(l0File));
+      }catch(IOException ex){
+         System.out.println(
+            "Could not save index for " + l0File.getName() + ": " + 
+            ex.getMessage()
+         );
       }
-      return bytes;
    }
-   
-   //close the output file when done and 
-   //return a string of all the frames' hex data
+
+   //close the output file and save its index when done
    public void finish() throws IOException{
       if (outFile != null) {
          outFile.close();
+         outFile = null;
+
+         index.write(
+            FrameIndex.fileFor(new File(outputPath + "/" + outName))
+         );
       }
    }
 }
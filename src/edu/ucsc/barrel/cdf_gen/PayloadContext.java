@@ -0,0 +1,255 @@
+/*
+PayloadContext.java
+
+Description:
+   Everything needed to process one payload for one day: the payload's
+   settings, its output paths, and its own DataHolder. Each payload gets its
+   own context so several payloads can be processed at the same time.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class PayloadContext implements Callable<Void>{
+   //the payload line from the ini file and the day being processed
+   private String payload, date;
+
+   //payload id, flight number, launch station, magnetometer and dpu ids
+   private String
+      id = "00",
+      flt = "00",
+      stn = "0",
+      mag = "0000",
+      dpu = "00";
+
+   private String tlm_Dir, L0_Dir, L1_Dir, L2_Dir;
+   private ArrayList<String> servers;
+   private DataHolder data;
+
+   public PayloadContext(
+      final String payload, final String date, final List<String> servers
+   ){
+      String output_Dir = "out";
+
+      this.payload = payload;
+      this.date = date;
+      this.servers = new ArrayList<String>(servers);
+
+      //break payload apart into id, flight number and launch station
+      String[] payload_parts = payload.split(",");
+      if(payload_parts[0] != null){id = payload_parts[0];}
+      if(payload_parts[1] != null){flt = payload_parts[1];}
+      if(payload_parts[2] != null){stn = payload_parts[2];}
+      if(payload_parts[3] != null){mag = payload_parts[3];}
+      if(payload_parts[3] != null){dpu = payload_parts[4];}
+
+      //set output paths
+      if(CDF_Gen.getSetting("outDir") != ""){
+         //check if user specified a place to store the files
+         output_Dir = CDF_Gen.getSetting("outDir");
+      }
+      tlm_Dir = output_Dir + "/tlm/" + id + "/" + date + "/";
+      L0_Dir = output_Dir + "/l0/" + id + "/" + date + "/";
+      L1_Dir = output_Dir + "/l1/" + id + "/";
+      L2_Dir = output_Dir + "/l2/" + id + "/";
+   }
+
+   public DataHolder getData(){return data;}
+   public String getPayload(){return payload;}
+
+   //download the telemetry and create each requested level of files
+   public Void call(){
+      DataCollector dataPull = null;
+
+      //create a new storage object
+      data = new DataHolder(payload);
+
+      //Figure out where the input files are coming from
+      File l0_file = null;
+      if(!CDF_Gen.getSetting("L0").equals("")){
+         //rebuild from a level zero file that was made earlier
+         l0_file = findL0(CDF_Gen.getSetting("L0"));
+         if(l0_file == null){
+            System.out.println(
+               "No level zero file for payload " + id + " on " + date
+            );
+            return null;
+         }
+         tlm_Dir = l0_file.getAbsoluteFile().getParent();
+      }else if(CDF_Gen.getSetting("local") == ""){
+         dataPull = new DataCollector(tlm_Dir, servers, id, date);
+
+         //read each repository and build a list of data file URLs
+         dataPull.getFileList();
+
+         //download each file after the URL list is made, unless the files
+         //are going to be decoded as they arrive
+         if(!CDF_Gen.getSetting("stream").equals("1")){
+            dataPull.getFiles();
+            dataPull = null;
+         }
+      }else{
+         //a telemetry file was provided so instead of creating one we will
+         //just change the tlm directory
+         tlm_Dir = CDF_Gen.getSetting("local");
+      }
+
+      //timing models are built while the frames are being decoded
+      ExtractTiming barrel_time = new ExtractTiming(data, date);
+      data.setTiming(barrel_time);
+
+      //Create level zero object and convert the data files to a level 0 file
+      try{
+         System.out.println("Creating Level Zero...");
+         LevelZero L0 = new LevelZero(
+            data,
+            Integer.parseInt(CDF_Gen.getSetting("frameLength")),
+            CDF_Gen.getSetting("syncWord"),
+            tlm_Dir,
+            L0_Dir,
+            id,
+            flt,
+            stn,
+            dpu,
+            date
+         );
+         if(l0_file != null){
+            L0.readL0(l0_file);
+         }else if(dataPull != null){
+            L0.processStream(dataPull.streamFiles());
+         }else{
+            L0.processRawFiles();
+         }
+         L0.finish();
+         System.out.println("Completed Level 0 for payload " + payload);
+
+         //If we didn't get any data, move on to the next payload.
+         if(data.getSize(Cadence.ONE_HZ) == 0){return null;}
+
+         //calculate throughput value
+         System.out.println(
+            "Payload " + payload + " Throughput: " +
+            (100 * data.getSize(Cadence.ONE_HZ) - 1) /
+            (data.frame_1Hz[data.getSize(Cadence.ONE_HZ) - 1] -
+            (data.frame_1Hz[0]))
+            + " %"
+         );
+
+         //Finish the timing models and fill the time variable
+         data.setTiming(null);
+         barrel_time.fixWeekOffset();
+         barrel_time.getTimeRecs();
+         barrel_time.fillModels();
+         barrel_time.fillEpoch();
+         barrel_time = null;
+
+         if(CDF_Gen.getSetting("L").indexOf("1") > -1){
+            //create Level One
+            LevelOne L1 = new LevelOne(data, date, id, flt, stn, L1_Dir);
+            L1 = null;
+         }
+
+         if(CDF_Gen.getSetting("L").indexOf("2") > -1){
+            System.out.println("Starting Level Two...");
+
+            //the 511 line is only used to calibrate the spectra
+            if(
+               CDFWriter.isSelected("fspc") || 
+               CDFWriter.isSelected("mspc") || 
+               CDFWriter.isSelected("sspc")
+            ){
+               find511Line();
+            }
+
+            //create Level Two
+            LevelTwo L2 = new LevelTwo(data, date, id, flt, stn, L2_Dir);
+            L2 = null;
+         }
+      }catch(IOException ex){
+         System.out.println(
+            ex.getMessage()
+         );
+      }
+
+      return null;
+   }
+
+   //Finds the level zero file for this payload and date. The L0 setting can
+   //name the file itself, or a directory that holds it either directly or
+   //in the <id>/<date>/ tree that level zero files are written to. If there
+   //are several revisions of the file the latest one is used. A file that
+   //is named directly is only used by the payload and date in its name.
+   private File findL0(final String setting){
+      String pattern = 
+         "bar1.*_" + id + "_.*_l0_20" + date + "_v.*\\.tlm";
+
+      File given = new File(setting);
+      if(given.isFile()){
+         return given.getName().matches(pattern) ? given : null;
+      }
+      File[] dirs = {
+         new File(setting + "/" + id + "/" + date),
+         given
+      };
+      for(File dir : dirs){
+         String[] names = dir.list();
+         if(names == null){continue;}
+
+         Arrays.sort(names);
+         for(int name_i = names.length - 1; name_i >= 0; name_i--){
+            if(names[name_i].matches(pattern)){
+               return new File(dir, names[name_i]);
+            }
+         }
+      }
+
+      return null;
+   }
+
+   //create a set of linear models that track the location of the 511 line
+   //and store them in the DataHolder object
+   private void find511Line(){
+      int
+         total_specs = data.getSize(Cadence.MOD32),
+         start_i = 0,
+         stop_i = 0,
+         max_recs = 20;
+
+      System.out.println("Locating 511 line...");
+
+      while(start_i < total_specs){
+         if((start_i + (2 * max_recs)) > total_specs){
+            stop_i = total_specs;
+         }else{
+            stop_i = start_i + max_recs;
+         }
+
+         SpectrumExtract.do511Fits(data, start_i, stop_i);
+         start_i = stop_i;
+      }
+      CDF_Gen.fill511Gaps(data);
+   }
+}
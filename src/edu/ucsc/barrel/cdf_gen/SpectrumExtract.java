@@ -24,12 +24,11 @@ Description:
 
 package edu.ucsc.barrel.cdf_gen;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
-import java.io.IOException;
-
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.lang.ArrayIndexOutOfBoundsException;
 
 import org.apache.commons.math3.fitting.GaussianFitter;
@@ -154,6 +153,53 @@ public class SpectrumExtract {
       PEAK_511_WIDTH = 50,
       PEAK_511_END = PEAK_511_START + PEAK_511_WIDTH;
 
+   //most recently used sets of calibrated edges
+   private static final int EDGE_CACHE_SIZE = 1024;
+   private static final Map<EdgeKey, float[]> edge_cache = 
+      new LinkedHashMap<EdgeKey, float[]>(EDGE_CACHE_SIZE, 0.75f, true){
+         protected boolean removeEldestEntry(Map.Entry<EdgeKey, float[]> e){
+            return size() > EDGE_CACHE_SIZE;
+         }
+      };
+   private static long edge_cache_hits = 0, edge_cache_misses = 0;
+
+   //everything makeedges() uses to build a set of edges
+   private static final class EdgeKey{
+      private final String payload;
+      private final int version, spec_i, xtal_temp, dpu_temp, peak511;
+
+      public EdgeKey(
+         String payload, int version, 
+         int spec_i, float xtal_temp, float dpu_temp, float peak511
+      ){
+         this.payload = payload;
+         this.version = version;
+         this.spec_i = spec_i;
+         this.xtal_temp = Float.floatToIntBits(xtal_temp);
+         this.dpu_temp = Float.floatToIntBits(dpu_temp);
+         this.peak511 = Float.floatToIntBits(peak511);
+      }
+
+      public boolean equals(Object o){
+         if(!(o instanceof EdgeKey)){return false;}
+         EdgeKey k = (EdgeKey)o;
+         return 
+            payload.equals(k.payload) && version == k.version && 
+            spec_i == k.spec_i && xtal_temp == k.xtal_temp && 
+            dpu_temp == k.dpu_temp && peak511 == k.peak511;
+      }
+
+      public int hashCode(){
+         int h = payload.hashCode();
+         h = 31 * h + version;
+         h = 31 * h + spec_i;
+         h = 31 * h + xtal_temp;
+         h = 31 * h + dpu_temp;
+         h = 31 * h + peak511;
+         return h;
+      }
+   }
+
    /*
       determine the max counts per spectrum to accept before assuming the 511 
       line is washed out
@@ -167,8 +213,7 @@ public class SpectrumExtract {
          (OLD_RAW_EDGES[2][PEAK_511_END]-OLD_RAW_EDGES[2][PEAK_511_START]) * 
          SCALE_FACTOR);
 
-   public static void do511Fits(int start, int stop){ 
-      DataHolder data = CDF_Gen.data;
+   public static void do511Fits(DataHolder data, int start, int stop){ 
 
       int length = stop - start;
 
@@ -208,14 +253,14 @@ public class SpectrumExtract {
          }
       }
 
-      peak = find511(bin_num, search_spec);
+      peak = find511(data, bin_num, search_spec);
 
       for(int peak_i = start; peak_i < stop; peak_i++){
          data.peak511_bin[peak_i] = peak; 
       }
    }
 
-   private static float find511(double[] x, double[] y){
+   private static float find511(DataHolder data, double[] x, double[] y){
       GaussianFitter fitter = 
          new GaussianFitter(new LevenbergMarquardtOptimizer());
       double[] 
@@ -270,7 +315,7 @@ public class SpectrumExtract {
       }
       catch(ArrayIndexOutOfBoundsException ex){
          System.out.println(
-            "Payload ID: " + CDF_Gen.getSetting("currentPayload") + 
+            "Payload ID: " + data.getPayload() + 
             " Date: " + CDF_Gen.getSetting("date"));
          System.out.println("Gaussian out of bounds: " + apex);
          fit_params[1] = Constants.DOUBLE_FILL;
@@ -278,10 +323,12 @@ public class SpectrumExtract {
       return (float)fit_params[1];
    }
 
-   public static float[] stdEdges(int spec_i, float scale){
+   public static float[] stdEdges(DataHolder data, int spec_i, float scale){
+      return stdEdges(data.getVersion(), spec_i, scale);
+   }
+   private static float[] stdEdges(int version, int spec_i, float scale){
       float[] edges = (
-         CDF_Gen.data.getVersion() > 3 ? 
-         RAW_EDGES[spec_i] : OLD_RAW_EDGES[spec_i]
+         version > 3 ? RAW_EDGES[spec_i] : OLD_RAW_EDGES[spec_i]
       );
       float[] result = new float[edges.length];
 
@@ -389,7 +436,7 @@ public class SpectrumExtract {
         xtal_temp     scintillator temperature in C
         peak511       sspc location for 511keV; 200 nominal; 0<peak511<4095 
 
-   INPUT_FILES: energy.cal
+   INPUT_FILES: energy.cal (read once by EnergyCalibration)
 
    OUTPUT: An array containing 1 of the 3 lists of bin edges
         slo is a float[257]
@@ -422,70 +469,65 @@ public class SpectrumExtract {
 
    NOTES: Ported from Michael McCarthy's original IDL code
 */
-   public static float[] makeedges(int spec_i, float peak511){
-      return makeedges(spec_i, 0f, 0f, peak511);
+   public static float[] makeedges(
+      DataHolder data, int spec_i, float peak511
+   ){
+      return makeedges(data, spec_i, 0f, 0f, peak511);
    }
    public static float[] makeedges(
+      DataHolder data, 
       int spec_i, float xtal_temp, float dpu_temp, float peak511
    ){
-      String payload = 
-         CDF_Gen.getSetting("currentPayload").substring(0,2);
+      String payload = data.getPayload();
+      int version = data.getVersion();
+
+      //Temperatures come from integer housekeeping counts, so consecutive
+      //spectra usually ask for exactly the same set of edges.
+      EdgeKey key = 
+         new EdgeKey(payload, version, spec_i, xtal_temp, dpu_temp, peak511);
+      float[] edges;
+      synchronized(edge_cache){
+         edges = edge_cache.get(key);
+         if(edges != null){
+            edge_cache_hits++;
+            return edges.clone();
+         }
+         edge_cache_misses++;
+      }
 
+      edges = 
+         calcEdges(payload, version, spec_i, xtal_temp, dpu_temp, peak511);
+
+      synchronized(edge_cache){
+         edge_cache.put(key, edges);
+      }
+      return edges.clone();
+   }
+
+   public static long getEdgeCacheHits(){
+      synchronized(edge_cache){return edge_cache_hits;}
+   }
+   public static long getEdgeCacheMisses(){
+      synchronized(edge_cache){return edge_cache_misses;}
+   }
+
+   private static float[] calcEdges(
+      String payload, int version, 
+      int spec_i, float xtal_temp, float dpu_temp, float peak511
+   ){
       float[] edges_in = (
-         CDF_Gen.data.getVersion() > 3 ? 
-         RAW_EDGES[spec_i] : OLD_RAW_EDGES[spec_i]
+         version > 3 ? RAW_EDGES[spec_i] : OLD_RAW_EDGES[spec_i]
       );
 
       //initialize array for calibrated edges
       float[] edges_out = new float[edges_in.length];
 
       //get dpu coefficients from calibration file
-      float[][] dpu_coeffs = {{-5f, -0.1f}, {-0.5f, -0.001f}, {-0.1f, 0.0001f}};
-      boolean payload_found = false;
-      File energy_cal = new File("energy.cal");
-      if(!energy_cal.exists()){}
-      try{
-         FileReader fr = new FileReader(energy_cal);
-         BufferedReader br = new BufferedReader(fr);
-         
-         String line;
-         String[] line_parts;
-
-         while((line = br.readLine()) != null){
-            //split off comments
-            line_parts = line.split(";");
-
-            //split the payload ID from the rest
-            line_parts = line_parts[0].split(":");
-            line_parts[0] = line_parts[0].trim();
-            if(!payload.equals(line_parts[0])){continue;}
-
-            //we have the right payload, check for the right number of values
-            payload_found = true;
-            line_parts[1] = line_parts[1].trim();
-            line_parts = line_parts[1].split(",");
-            if(line_parts.length != 6){continue;}
-
-            //the correct number of values were in the file
-            //overwrite defaults
-            dpu_coeffs = new float[][] {
-               {Float.valueOf(line_parts[0]), Float.valueOf(line_parts[1])},
-               {Float.valueOf(line_parts[2]), Float.valueOf(line_parts[3])},
-               {Float.valueOf(line_parts[4]), Float.valueOf(line_parts[5])}
-            };
-            br.close();
-            break;
-         }
-
-         br.close();
-      }catch(IOException ex){
-         System.out.println("Can not find energy calibration file.");
-         System.out.println("Using default values.");
-      }
+      float[][] dpu_coeffs = EnergyCalibration.get().getCoeffs(payload);
       
       //just return standard edges if there are no dpu coefficients
-      if(!payload_found){
-         return stdEdges(spec_i, SCALE_FACTOR);
+      if(dpu_coeffs == null){
+         return stdEdges(version, spec_i, SCALE_FACTOR);
       }
 
       //set model parameters 
@@ -523,10 +565,12 @@ public class SpectrumExtract {
    }
 
 
-   public static float[] createBinEdges(int spec_i, double peak511){
+   public static float[] createBinEdges(
+      DataHolder data, int spec_i, double peak511
+   ){
       double factor1, factor2, scale;
       float[] edges_in = (
-         CDF_Gen.data.getVersion() > 3 ? 
+         data.getVersion() > 3 ? 
          RAW_EDGES[spec_i] : OLD_RAW_EDGES[spec_i]
       );
       double[] edges_nonlin = new double[edges_in.length];
@@ -574,8 +618,229 @@ public class SpectrumExtract {
    }
    
 
+   //workers shared by every batch of spectra being calibrated. The common 
+   //pool is used so payloads calibrated at the same time share one set of
+   //workers instead of each starting a pool as big as the machine.
+   private static final ForkJoinPool calibration_pool = 
+      ForkJoinPool.commonPool();
+
+   //number of spectra below which a batch is no longer split up
+   private static final int CALIBRATE_GRAIN = 32;
+
+   /*
+      Calibrates a block of spectra. Record rec_i uses raw[first + rec_i] and
+      the temperatures and 511 peak at rec_i. Each spectrum is rebinned onto
+      std_edges, divided by bin width and integration time, and written to
+      counts starting at rec_i * bins, with the count error written to error
+      at the same place. Fill bins are left as fill with an error of 0.
+   */
+   public static void calibrate(
+      DataHolder data, int spec_i, int[][] raw, int first, 
+      float[] xtal_temp, float[] dpu_temp, float[] peak511, 
+      float[] std_edges, float time_scale, float[] counts, float[] error
+   ){
+      calibration_pool.invoke(
+         new CalibrateTask(
+            data, spec_i, raw, first, xtal_temp, dpu_temp, peak511, 
+            std_edges, time_scale, counts, error, 0, xtal_temp.length
+         )
+      );
+   }
+
+   private static class CalibrateTask extends RecursiveAction{
+      private static final long serialVersionUID = 1L;
+
+      private final DataHolder data;
+      private final int spec_i, first, start, stop;
+      private final int[][] raw;
+      private final float time_scale;
+      private final float[] 
+         xtal_temp, dpu_temp, peak511, std_edges, counts, error;
+
+      public CalibrateTask(
+         DataHolder data, int spec_i, int[][] raw, int first, 
+         float[] xtal_temp, float[] dpu_temp, float[] peak511, 
+         float[] std_edges, float time_scale, float[] counts, float[] error,
+         int start, int stop
+      ){
+         this.data = data;
+         this.spec_i = spec_i;
+         this.raw = raw;
+         this.first = first;
+         this.xtal_temp = xtal_temp;
+         this.dpu_temp = dpu_temp;
+         this.peak511 = peak511;
+         this.std_edges = std_edges;
+         this.time_scale = time_scale;
+         this.counts = counts;
+         this.error = error;
+         this.start = start;
+         this.stop = stop;
+      }
+
+      protected void compute(){
+         if(stop - start > CALIBRATE_GRAIN){
+            int mid = (start + stop) >>> 1;
+            invokeAll(
+               new CalibrateTask(
+                  data, spec_i, raw, first, xtal_temp, dpu_temp, peak511, 
+                  std_edges, time_scale, counts, error, start, mid
+               ),
+               new CalibrateTask(
+                  data, spec_i, raw, first, xtal_temp, dpu_temp, peak511, 
+                  std_edges, time_scale, counts, error, mid, stop
+               )
+            );
+            return;
+         }
+
+         int bins = std_edges.length - 1;
+         float[] 
+            old_edges,
+            rebinned = new float[bins];
+
+         for(int rec_i = start; rec_i < stop; rec_i++){
+            //get the adjusted bin edges
+            old_edges = makeedges(
+               data, spec_i, xtal_temp[rec_i], dpu_temp[rec_i], peak511[rec_i]
+            );
+
+            //rebin the spectrum
+            rebin(raw[first + rec_i], old_edges, std_edges, rebinned);
+
+            for(
+               int bin_i = 0, out_i = rec_i * bins; 
+               bin_i < bins; 
+               bin_i++, out_i++
+            ){
+               if(rebinned[bin_i] != Constants.FLOAT_FILL){
+                  float width = std_edges[bin_i + 1] - std_edges[bin_i];
+
+                  //get the count error
+                  error[out_i] = 
+                     (float)Math.sqrt(rebinned[bin_i]) / (width * time_scale);
+
+                  //divide counts by bin width and adjust the time scale
+                  counts[out_i] = rebinned[bin_i] / (width * time_scale);
+               }else{
+                  error[out_i] = 0f;
+                  counts[out_i] = Constants.FLOAT_FILL;
+               }
+            }
+         }
+      }
+   }
+
    public static float[] rebin(
       int[] specin, float[] edges_in, float[] edges_out
+   ){
+      return rebin(specin, edges_in, edges_out, new float[specin.length]);
+   }
+
+   //Moves the counts in specin from the bins described by edges_in to the 
+   //bins described by edges_out. Results are written to specout, which must
+   //be at least as long as specin, and specout is returned.
+   public static float[] rebin(
+      int[] specin, float[] edges_in, float[] edges_out, float[] specout
+   ){
+      int numOfBins = specin.length;
+
+      if(!isSorted(edges_in, numOfBins) || !isSorted(edges_out, numOfBins)){
+         return rebinPairwise(specin, edges_in, edges_out, specout);
+      }
+
+      //Both sets of edges are in order, so the input bins that touch each 
+      //output bin are a run that only moves forward as the output bins do.
+      //lo is the first input bin that ends at or after the output bin starts
+      //and hi is one past the last input bin that starts at or before the 
+      //output bin ends.
+      int lo = 0, hi = 0;
+
+      spec_loop:
+      for(int i = 0; i < numOfBins; i++){
+         float 
+            eb1 = edges_out[i],
+            eb2 = edges_out[i + 1],
+            width_out = eb2 - eb1;
+
+         specout[i] = 0f;
+
+         while(lo < numOfBins && edges_in[lo + 1] < eb1){lo++;}
+         if(hi < lo){hi = lo;}
+         while(hi < numOfBins && edges_in[hi] <= eb2){hi++;}
+
+         //Transfer counts the same way rebinPairwise() does: each kind of
+         //overlap in turn, so the sums come out exactly the same.
+
+         //Old bins completely contain new bins [exclude specific case
+         //where they are identical, but keep cases where one side matches]:
+         for(int j = lo; j < hi; j++){
+            float ea1 = edges_in[j], ea2 = edges_in[j + 1];
+            if(
+               ((eb1 >= ea1) && (eb2 <= ea2)) &&
+               !((eb1 == ea1) && (eb2 == ea2))
+            ){
+               if(specin[j] < 0){
+                  specout[i] = Constants.FLOAT_FILL;
+                  continue spec_loop;
+               }
+               specout[i] += width_out / (ea2 - ea1) * specin[j];
+            }
+         }
+
+         //New bins completely contain old bins
+         for(int j = lo; j < hi; j++){
+            if((eb1 <= edges_in[j]) && (eb2 >= edges_in[j + 1])){
+               if(specin[j] < 0){
+                  specout[i] = Constants.FLOAT_FILL;
+                  continue spec_loop;
+               }
+               specout[i] += specin[j];
+            }
+         }
+
+         //new bin overlaps lower edge
+         for(int j = lo; j < hi; j++){
+            float ea1 = edges_in[j], ea2 = edges_in[j + 1];
+            if((eb2 < ea2) && (eb2 > ea1) && (eb1 < ea1)){
+               if(specin[j] < 0){
+                  specout[i] = Constants.FLOAT_FILL;
+                  continue spec_loop;
+               }
+               specout[i] += (eb2 - ea1) / (ea2 - ea1) * specin[j];
+            }
+         }
+
+         //new bin overlaps upper edge
+         for(int j = lo; j < hi; j++){
+            float ea1 = edges_in[j], ea2 = edges_in[j + 1];
+            if((eb1 > ea1) && (eb1 < ea2) && (eb2 > ea2)){
+               if(specin[j] < 0){
+                  specout[i] = Constants.FLOAT_FILL;
+                  continue spec_loop;
+               }
+               specout[i] += (ea2 - eb1) / (ea2 - ea1) * specin[j];
+            }
+         }
+      }
+
+      return specout;
+   }
+
+   //true if the first bins + 1 edges never decrease
+   private static boolean isSorted(float[] edges, int bins){
+      if(edges.length < bins + 1){return false;}
+      for(int edge_i = 0; edge_i < bins; edge_i++){
+         if(!(edges[edge_i] <= edges[edge_i + 1])){return false;}
+      }
+      return true;
+   }
+
+   //Compares every output bin against every input bin. Only used when the
+   //edges are not in order. Left package private so RebinCheck can compare
+   //it with rebin().
+   static float[] rebinPairwise(
+      int[] specin, float[] edges_in, float[] edges_out, float[] specout
    ){
       int a_cnt, b_cnt, c_cnt, d_cnt;
 
@@ -596,8 +861,9 @@ public class SpectrumExtract {
          eb1 = Arrays.copyOfRange(edges_out, 0, (numOfEdges - 1)),
          eb2 = Arrays.copyOfRange(edges_out, 1, numOfEdges),
          widths_in = new float[numOfBins],
-         widths_out = new float[numOfBins],
-         specout = new float[numOfBins];
+         widths_out = new float[numOfBins];
+
+      Arrays.fill(specout, 0, numOfBins, 0f);
 
       //calculate the widths of each bin
       for(int i = 0; i < numOfBins; i++){
@@ -0,0 +1,263 @@
+/*
+TimingCache.java
+
+Description:
+   Saves the timing models made for a payload so the next run can use them.
+   Each model is stored with a key made from the time pairs it was fit to.
+   Blocks of time pairs start at each day's own first pair, so a saved fit
+   only matches again when the same day is run again. Other days use the
+   saved models only when they have no time pairs of their own, and only a
+   model whose frames overlap or run right up to theirs. The last good GPS
+   week of each day is saved too, so a day that starts without one can use
+   the week from the day before. The cache is kept in timing_cache/<payload>,
+   next to the fc_rollovers markers, and is replaced in one step each time
+   it is saved.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TreeMap;
+
+public class TimingCache{
+   //most models kept in the file, about three weeks of data
+   private static final int MAX_MODELS = 1000;
+
+   //most days kept in the list of last good weeks
+   private static final int MAX_WEEKS = 400;
+
+   //Largest gap allowed between a model from another day and the frames it
+   //is used for. A model ends at its last time pair, which can be a few
+   //frames before the last frame of its day, so one mod40 group is allowed.
+   private static final long MAX_GAP_FRAMES = 40;
+
+   //one fit model and the block of time pairs it came from
+   public static class Model{
+      public final String date;
+      public final long first, last, key;
+      public final int count;
+      public final double slope, intercept;
+
+      public Model(
+         final String date, final long first, final long last,
+         final int count, final long key,
+         final double slope, final double intercept
+      ){
+         this.date = date;
+         this.first = first;
+         this.last = last;
+         this.count = count;
+         this.key = key;
+         this.slope = slope;
+         this.intercept = intercept;
+      }
+   }
+
+   private File file;
+   private List<Model> models = new ArrayList<Model>();
+   private TreeMap<String, Integer> weeks = new TreeMap<String, Integer>();
+
+   private TimingCache(final File file){
+      this.file = file;
+   }
+
+   //Reads the cache for a payload. A missing or unreadable cache file just
+   //gives an empty cache. Setting timing_cache=0 turns the cache off.
+   public static TimingCache load(final String payload){
+      if(CDF_Gen.getSetting("timing_cache").equals("0")){
+         return new TimingCache(null);
+      }
+
+      TimingCache cache =
+         new TimingCache(new File("timing_cache/" + payload));
+      if(!cache.file.exists()){return cache;}
+
+      try{
+         BufferedReader in = new BufferedReader(new FileReader(cache.file));
+         String line;
+         while((line = in.readLine()) != null){
+            String[] parts = line.trim().split("\\s+");
+            if(parts[0].equals("week") && parts.length == 3){
+               cache.weeks.put(parts[1], Integer.valueOf(parts[2]));
+            }else if(parts[0].equals("model") && parts.length == 8){
+               cache.models.add(new Model(
+                  parts[1],
+                  Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                  Integer.parseInt(parts[4]), Long.parseLong(parts[5]),
+                  Double.parseDouble(parts[6]), Double.parseDouble(parts[7])
+               ));
+            }
+         }
+         in.close();
+      }catch(IOException ex){
+         System.out.println("Could not read timing cache: " + ex.getMessage());
+      }catch(NumberFormatException ex){
+         System.out.println("Timing cache " + cache.file + " is damaged.");
+         cache.models.clear();
+         cache.weeks.clear();
+      }
+
+      return cache;
+   }
+
+   //Key for a block of time pairs. Only a block with exactly the same pairs
+   //will match a saved model.
+   public static long key(
+      final long[] frames, final long[] ms, final int first, final int last
+   ){
+      long h = 1125899906842597L;
+      for(int rec_i = first; rec_i < last; rec_i++){
+         h = 31 * h + frames[rec_i];
+         h = 31 * h + ms[rec_i];
+      }
+      return h;
+   }
+
+   //finds a saved model that was fit to the same block of time pairs
+   public Model find(
+      final long first, final long last, final int count, final long key
+   ){
+      for(Model model : models){
+         if(
+            model.first == first && model.last == last &&
+            model.count == count && model.key == key
+         ){
+            return model;
+         }
+      }
+      return null;
+   }
+
+   //Returns a saved model from another day whose frames overlap or run 
+   //right up to the frames first - last, or null if there is none. When 
+   //there are several, the one that ends closest to the first frame is used.
+   public Model adjoining(final String date, final long first, final long last){
+      Model best = null;
+      for(Model model : models){
+         if(model.date.equals(date)){continue;}
+         if(
+            model.first > last + MAX_GAP_FRAMES || 
+            model.last < first - MAX_GAP_FRAMES
+         ){
+            continue;
+         }
+
+         if(
+            best == null ||
+            Math.abs(first - model.last) < Math.abs(first - best.last)
+         ){
+            best = model;
+         }
+      }
+      return best;
+   }
+
+   //Last good GPS week of the day before date, or 0 if that day has not
+   //been run. Weeks saved for any other day are never used, so a day's
+   //epochs don't depend on which days happened to be run before it.
+   public int getWeek(final String date){
+      Integer week = weeks.get(dayBefore(date));
+      return week == null ? 0 : week.intValue();
+   }
+
+   //the yymmdd date of the day before a yymmdd date
+   private static String dayBefore(final String date){
+      int yymmdd = Integer.parseInt(date);
+      Calendar dateObj = Calendar.getInstance();
+      dateObj.clear();
+      dateObj.set(
+         2000 + yymmdd / 10000, (yymmdd / 100) % 100 - 1, yymmdd % 100
+      );
+      dateObj.add(Calendar.DATE, -1);
+      return String.format(
+         "%02d%02d%02d", 
+         dateObj.get(Calendar.YEAR) - 2000, 
+         dateObj.get(Calendar.MONTH) + 1, 
+         dateObj.get(Calendar.DATE)
+      );
+   }
+
+   //Replaces the models saved for a date with the ones just made and
+   //writes the cache back out.
+   public void save(
+      final String date, final List<Model> made, final int last_week
+   ){
+      List<Model> kept = new ArrayList<Model>(made);
+      for(Model model : models){
+         if(kept.size() >= MAX_MODELS){break;}
+         if(!model.date.equals(date)){kept.add(model);}
+      }
+      models = kept;
+      if(last_week != 0){weeks.put(date, last_week);}
+      while(weeks.size() > MAX_WEEKS){weeks.remove(weeks.firstKey());}
+      if(file == null){return;}
+
+      //write a new file and then move it over the old one so a save that
+      //is cut short never leaves a partly written cache behind
+      File part = new File(file.getPath() + ".part");
+      try{
+         file.getParentFile().mkdirs();
+         PrintWriter out = new PrintWriter(new FileWriter(part));
+         for(String week_date : weeks.keySet()){
+            out.println("week " + week_date + " " + weeks.get(week_date));
+         }
+         for(Model model : models){
+            out.println(
+               "model " + model.date + " " + model.first + " " +
+               model.last + " " + model.count + " " + model.key + " " +
+               model.slope + " " + model.intercept
+            );
+         }
+         out.close();
+         if(out.checkError()){
+            throw new IOException("could not write " + part);
+         }
+
+         try{
+            Files.move(
+               part.toPath(), file.toPath(), 
+               StandardCopyOption.ATOMIC_MOVE, 
+               StandardCopyOption.REPLACE_EXISTING
+            );
+         }catch(AtomicMoveNotSupportedException ex){
+            Files.move(
+               part.toPath(), file.toPath(), 
+               StandardCopyOption.REPLACE_EXISTING
+            );
+         }
+      }catch(IOException ex){
+         part.delete();
+         System.out.println(
+            "Could not save timing cache: " + ex.getMessage()
+         );
+      }
+   }
+}
@@ -0,0 +1,361 @@
+/*
+DownloadCheck.java
+
+Description:
+   Runs DataCollector against small HTTP servers on this machine and checks
+   that failed downloads are retried with a growing delay, that files which
+   are already current are only checked with a HEAD request, that a file is
+   never seen under its real name until it has all arrived, that a file one
+   server can't supply comes from the next one, and that no more than
+   server_connections downloads from one server run at once. Run with
+   "ant check". Exits with a non-zero status if any check fails.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class DownloadCheck{
+   private static final String
+      PAYLOAD = "1A",
+      DATE = "131227",
+      MODIFIED = "Fri, 27 Dec 2013 12:00:00 GMT";
+
+   private static int failures = 0;
+   private static List<Server> servers = new ArrayList<Server>();
+
+   //A stand in for one of the data servers. Each file can be made to fail a
+   //number of times, arrive in two halves, or stop short of its length.
+   private static class Server implements HttpHandler{
+      private final HttpServer http;
+      private final ExecutorService workers = Executors.newCachedThreadPool();
+      private final String url;
+
+      //files listed by the manifest, null contents give a 404
+      private final Map<String, byte[]> files = new HashMap<String, byte[]>();
+      private final Map<String, Integer>
+         fail_first = new HashMap<String, Integer>(),
+         gets = new HashMap<String, Integer>(),
+         heads = new HashMap<String, Integer>();
+      private String split = null, truncate = null;
+      private long delay = 0;
+      private int active = 0, most_active = 0;
+
+      public Server() throws IOException{
+         http = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+         http.setExecutor(workers);
+         http.createContext("/", this);
+         http.start();
+         url = "http://127.0.0.1:" + http.getAddress().getPort();
+         servers.add(this);
+      }
+
+      public void stop(){
+         http.stop(0);
+         workers.shutdownNow();
+      }
+
+      public void handle(HttpExchange ex) throws IOException{
+         String path = ex.getRequestURI().getPath();
+         boolean head = ex.getRequestMethod().equals("HEAD");
+
+         try{
+            if(path.startsWith("/cgi-bin")){
+               StringBuilder list = new StringBuilder();
+               synchronized(this){
+                  for(String name : files.keySet()){
+                     list.append(name).append("\n");
+                  }
+               }
+               send(ex, list.toString().getBytes(), head);
+               return;
+            }
+
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            byte[] body;
+            boolean fail;
+            synchronized(this){
+               count(head ? heads : gets, name);
+               body = files.get(name);
+               Integer left = fail_first.get(name);
+               fail = !head && left != null && left > 0;
+               if(fail){fail_first.put(name, left - 1);}
+               if(!head){
+                  active++;
+                  most_active = Math.max(most_active, active);
+               }
+            }
+
+            try{
+               if(body == null){
+                  ex.sendResponseHeaders(404, -1);
+               }else if(fail){
+                  ex.sendResponseHeaders(500, -1);
+               }else{
+                  if(!head && delay > 0){Thread.sleep(delay);}
+                  send(ex, body, head);
+               }
+            }finally{
+               if(!head){
+                  synchronized(this){active--;}
+               }
+            }
+         }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+         }finally{
+            ex.close();
+         }
+      }
+
+      private void send(HttpExchange ex, byte[] body, boolean head)
+         throws IOException, InterruptedException
+      {
+         String name = ex.getRequestURI().getPath();
+         name = name.substring(name.lastIndexOf('/') + 1);
+
+         ex.getResponseHeaders().add("Last-Modified", MODIFIED);
+         if(head){
+            ex.getResponseHeaders().add("Content-Length", "" + body.length);
+            ex.sendResponseHeaders(200, -1);
+            return;
+         }
+
+         ex.sendResponseHeaders(200, body.length);
+         OutputStream out = ex.getResponseBody();
+         int half = body.length / 2;
+         out.write(body, 0, half);
+         out.flush();
+         if(name.equals(truncate)){return;}
+         if(name.equals(split)){Thread.sleep(300);}
+         out.write(body, half, body.length - half);
+      }
+
+      private static void count(Map<String, Integer> counts, String name){
+         Integer n = counts.get(name);
+         counts.put(name, n == null ? 1 : n + 1);
+      }
+
+      public synchronized int gets(String name){
+         Integer n = gets.get(name);
+         return n == null ? 0 : n;
+      }
+
+      public synchronized int heads(String name){
+         Integer n = heads.get(name);
+         return n == null ? 0 : n;
+      }
+   }
+
+   public static void main(String[] args) throws Exception{
+      File dir = Files.createTempDirectory("download_check").toFile();
+      try{
+         checkRetry(new File(dir, "retry"));
+         checkPartFiles(new File(dir, "part"));
+         checkFallback(new File(dir, "fallback"));
+         checkConnectionLimit(new File(dir, "limit"));
+      }finally{
+         for(Server server : servers){server.stop();}
+         delete(dir);
+      }
+
+      if(failures > 0){
+         System.out.println(failures + " download checks failed.");
+         System.exit(1);
+      }
+      System.out.println("DataCollector passed all download checks.");
+   }
+
+   //a file that fails twice is fetched on the third try, after waiting
+   //1 and then 2 seconds, and is then left alone until it changes
+   private static void checkRetry(File dir) throws IOException{
+      Server server = new Server();
+      server.files.put("a.bin", bytes(5000, 1));
+      server.fail_first.put("a.bin", 2);
+      CDF_Gen.setSetting("download_retries", "2");
+
+      long start = System.currentTimeMillis();
+      collect(dir, server);
+      long waited = System.currentTimeMillis() - start;
+
+      check("retried file arrives", same(new File(dir, "a.bin"),
+         server.files.get("a.bin")));
+      check("failed file is tried 3 times", server.gets("a.bin") == 3);
+      check("retries back off 1s then 2s", waited >= 2900);
+
+      //nothing has changed, so only a HEAD request is made
+      collect(dir, server);
+      check("current file is not downloaded again", server.gets("a.bin") == 3);
+      check("current file is checked with HEAD", server.heads("a.bin") == 1);
+
+      //a new size on the server means the file is downloaded again
+      synchronized(server){server.files.put("a.bin", bytes(6000, 2));}
+      collect(dir, server);
+      check("changed file is downloaded again", server.gets("a.bin") == 4 &&
+         same(new File(dir, "a.bin"), server.files.get("a.bin")));
+   }
+
+   //Files are written under a .part name and renamed once they are whole.
+   //A file that stops short is never saved, and .part files left by an
+   //earlier run are cleared out.
+   private static void checkPartFiles(File dir) throws Exception{
+      Server server = new Server();
+      final byte[] slow = bytes(200000, 3);
+      server.files.put("slow.bin", slow);
+      server.files.put("short.bin", bytes(200000, 4));
+      server.split = "slow.bin";
+      server.truncate = "short.bin";
+      CDF_Gen.setSetting("download_retries", "0");
+
+      dir.mkdirs();
+      File stale = new File(dir, "old.bin" + DataCollector.PART_SUFFIX);
+      new FileOutputStream(stale).close();
+
+      //watch the slow file while it is downloaded
+      final File
+         dest = new File(dir, "slow.bin"),
+         part = new File(dir, "slow.bin" + DataCollector.PART_SUFFIX);
+      final boolean[] seen = {false, false};//part file seen, partial file seen
+      Thread watcher = new Thread(){
+         public void run(){
+            while(!isInterrupted()){
+               if(part.exists()){seen[0] = true;}
+               if(dest.exists() && dest.length() != slow.length){
+                  seen[1] = true;
+               }
+               try{
+                  Thread.sleep(2);
+               }catch(InterruptedException ex){
+                  return;
+               }
+            }
+         }
+      };
+      watcher.start();
+      collect(dir, server);
+      watcher.interrupt();
+      watcher.join();
+
+      check("file is written to a .part name first", seen[0]);
+      check("partly downloaded file never has its real name", !seen[1]);
+      check("whole file is renamed into place", same(dest, slow));
+      check("no .part file is left after a download", !part.exists());
+      check("file that stops short is not saved",
+         !new File(dir, "short.bin").exists());
+      check("old .part files are cleared", !stale.exists());
+   }
+
+   //a file the first server doesn't have comes from the second
+   private static void checkFallback(File dir) throws IOException{
+      Server first = new Server(), second = new Server();
+      first.files.put("b.bin", null);
+      second.files.put("b.bin", bytes(3000, 5));
+      CDF_Gen.setSetting("download_retries", "0");
+
+      collect(dir, first, second);
+      check("first server is tried", first.gets("b.bin") == 1);
+      check("file comes from the second server", second.gets("b.bin") == 1 &&
+         same(new File(dir, "b.bin"), second.files.get("b.bin")));
+   }
+
+   //with more download threads than connections, the connections win
+   private static void checkConnectionLimit(File dir) throws IOException{
+      Server server = new Server();
+      for(int file_i = 0; file_i < 12; file_i++){
+         server.files.put("c" + file_i + ".bin", bytes(1000, 10 + file_i));
+      }
+      server.delay = 150;
+      CDF_Gen.setSetting("download_retries", "0");
+      CDF_Gen.setSetting("download_threads", "6");
+      CDF_Gen.setSetting("server_connections", "2");
+
+      collect(dir, server);
+
+      boolean all = true;
+      for(int file_i = 0; file_i < 12; file_i++){
+         String name = "c" + file_i + ".bin";
+         all &= same(new File(dir, name), server.files.get(name));
+      }
+      check("every file arrives with the connection limit", all);
+      check(
+         "at most 2 connections to a server at once (saw " +
+         server.most_active + ")",
+         server.most_active <= 2
+      );
+      check("connections are used in parallel", server.most_active == 2);
+   }
+
+   //runs a batch download of every file the servers list
+   private static void collect(File dir, Server... from){
+      ArrayList<String> urls = new ArrayList<String>();
+      for(Server server : from){urls.add(server.url);}
+
+      DataCollector collector =
+         new DataCollector(dir.getPath(), urls, PAYLOAD, DATE);
+      collector.getFileList();
+      collector.getFiles();
+   }
+
+   private static void check(String what, boolean ok){
+      if(!ok){
+         System.out.println("Failed: " + what);
+         failures++;
+      }
+   }
+
+   private static boolean same(File file, byte[] expected){
+      try{
+         return
+            file.exists() &&
+            Arrays.equals(Files.readAllBytes(file.toPath()), expected);
+      }catch(IOException ex){
+         return false;
+      }
+   }
+
+   private static byte[] bytes(int length, int seed){
+      byte[] data = new byte[length];
+      new java.util.Random(seed).nextBytes(data);
+      return data;
+   }
+
+   private static void delete(File file){
+      File[] list = file.listFiles();
+      if(list != null){
+         for(File file_i : list){delete(file_i);}
+      }
+      file.delete();
+   }
+}
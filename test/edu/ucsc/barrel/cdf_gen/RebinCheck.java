@@ -0,0 +1,136 @@
+/*
+RebinCheck.java
+
+Description:
+   Checks that SpectrumExtract.rebin() gives exactly the same result as the
+   original pairwise rebinning, bit for bit, for many randomly made spectra
+   and sets of bin edges. Run with "ant check". Exits with a non-zero status
+   if any spectrum differs.
+
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+   This file is part of The BARREL CDF Generator.
+
+   The BARREL CDF Generator is free software: you can redistribute it and/or
+   modify it under the terms of the GNU General Public License as published
+   by the Free Software Foundation, either version 3 of the License, or
+   (at your option) any later version.
+
+   The BARREL CDF Generator is distributed in the hope that it will be useful,
+   but WITHOUT ANY WARRANTY; without even the implied warranty of
+   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+   GNU General Public License for more details.
+
+   You should have received a copy of the GNU General Public License along with
+   The BARREL CDF Generator.  If not, see <http://www.gnu.org/licenses/>.
+   ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+*/
+
+package edu.ucsc.barrel.cdf_gen;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class RebinCheck{
+   //spectra checked for each kind of input
+   private static final int TRIALS = 5000;
+
+   private static Random rand = new Random(7);
+   private static int failures = 0;
+
+   public static void main(String[] args){
+      for(int trial_i = 0; trial_i < TRIALS; trial_i++){
+         int bins = rand.nextBoolean() ? 48 : 256;
+         float[] edges_in, edges_out;
+
+         //both sets of edges in order, like the calibrated and standard edges
+         edges_in = sortedEdges(bins, false);
+         edges_out = sortedEdges(bins, false);
+         check("sorted", counts(bins, false), edges_in, edges_out);
+
+         //edges that are only shifted a little, so many of them match
+         edges_out = edges_in.clone();
+         for(int edge_i = 0; edge_i < edges_out.length; edge_i++){
+            if(rand.nextBoolean()){
+               edges_out[edge_i] += (rand.nextInt(3) - 1) * 0.25f;
+            }
+         }
+         Arrays.sort(edges_out);
+         check("matching", counts(bins, false), edges_in, edges_out);
+
+         //several edges at the same energy, like low bins forced to 0 keV
+         edges_in = sortedEdges(bins, true);
+         edges_out = sortedEdges(bins, true);
+         check("duplicate", counts(bins, false), edges_in, edges_out);
+
+         //edges out of order or not a number
+         edges_in = sortedEdges(bins, false);
+         edges_out = sortedEdges(bins, false);
+         int swap = rand.nextInt(bins);
+         float tmp = edges_in[swap];
+         edges_in[swap] = edges_in[swap + 1] + 1;
+         edges_in[swap + 1] = tmp;
+         if(rand.nextBoolean()){edges_out[rand.nextInt(bins)] = Float.NaN;}
+         check("unsorted", counts(bins, false), edges_in, edges_out);
+
+         //fill values in the counts
+         edges_in = sortedEdges(bins, rand.nextBoolean());
+         edges_out = sortedEdges(bins, rand.nextBoolean());
+         check("negative", counts(bins, true), edges_in, edges_out);
+      }
+
+      if(failures > 0){
+         System.out.println(failures + " rebinned spectra differ.");
+         System.exit(1);
+      }
+      System.out.println("rebin matches rebinPairwise for all spectra.");
+   }
+
+   private static void check(
+      String kind, int[] specin, float[] edges_in, float[] edges_out
+   ){
+      float[]
+         sweep = SpectrumExtract.rebin(specin, edges_in, edges_out),
+         pairwise = SpectrumExtract.rebinPairwise(
+            specin, edges_in, edges_out, new float[specin.length]
+         );
+
+      for(int bin_i = 0; bin_i < specin.length; bin_i++){
+         if(
+            Float.floatToIntBits(sweep[bin_i]) !=
+            Float.floatToIntBits(pairwise[bin_i])
+         ){
+            if(failures < 10){
+               System.out.println(
+                  kind + " spectrum differs in bin " + bin_i + ": " +
+                  sweep[bin_i] + " != " + pairwise[bin_i]
+               );
+            }
+            failures++;
+            return;
+         }
+      }
+   }
+
+   //bins + 1 edges that never decrease, some of them repeated if asked
+   private static float[] sortedEdges(int bins, boolean repeats){
+      float[] edges = new float[bins + 1];
+      float energy = rand.nextFloat() * 10 - 5;
+
+      for(int edge_i = 0; edge_i <= bins; edge_i++){
+         edges[edge_i] = energy;
+         if(repeats && rand.nextInt(4) == 0){continue;}
+         energy += rand.nextInt(3) == 0 ? 1f : rand.nextFloat() * 20;
+      }
+
+      return edges;
+   }
+
+   private static int[] counts(int bins, boolean fill){
+      int[] spec = new int[bins];
+      for(int bin_i = 0; bin_i < bins; bin_i++){
+         spec[bin_i] =
+            (fill && rand.nextInt(30) == 0) ? -1 : rand.nextInt(1000);
+      }
+      return spec;
+   }
+}